@@ -5,6 +5,7 @@ import base64 from 'base64-js';
 import EventTarget from 'event-target-shim';
 import MessageEvent from './MessageEvent';
 import RTCDataChannelEvent from './RTCDataChannelEvent';
+import RTCEvent from './RTCEvent';
 
 const {WebRTCModule} = NativeModules;
 
@@ -31,17 +32,46 @@ const DATA_CHANNEL_EVENTS = [
   'bufferedamountlow',
   'close',
   'error',
+  'fileprogress', // non-standard
 ];
 
 class ResourceInUse extends Error {}
 
+/**
+ * Computes the number of bytes of the UTF-8 encoding of a specific string
+ * without encoding it.
+ */
+function utf8ByteLength(s: string): number {
+  let length = s.length;
+  for (let i = s.length - 1; i >= 0; --i) {
+    const c = s.charCodeAt(i);
+    if (c > 0x7f && c <= 0x7ff) {
+      length += 1;
+    } else if (c > 0x7ff && c <= 0xffff) {
+      length += 2;
+    }
+    if (c >= 0xdc00 && c <= 0xdfff) {
+      // A surrogate pair is 4 bytes in total i.e. skip the high surrogate.
+      --i;
+    }
+  }
+  return length;
+}
+
 export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
 
   _peerConnectionId: number;
 
   binaryType: 'arraybuffer' = 'arraybuffer'; // we only support 'arraybuffer'
+  _bufferedAmountLowThreshold: number = 0;
+
   bufferedAmount: number = 0;
-  bufferedAmountLowThreshold: number = 0;
+  // The number of messages sent by this data channel which the last natively
+  // reported bufferedAmount accounts for and the byte lengths of those sent
+  // since (i.e. still on their way to the native data channel).
+  _sendCount: number = 0;
+  _pendingSendLengths: Array<number> = [];
+  _pendingSendBytes: number = 0;
   id: number;
   label: string;
   maxPacketLifeTime: ?number = null;
@@ -56,6 +86,7 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
   onbufferedamountlow: ?Function;
   onerror: ?Function;
   onclose: ?Function;
+  onfileprogress: ?Function;
 
   constructor(
       peerConnectionId: number,
@@ -84,8 +115,34 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
     this._registerEvents();
   }
 
+  get bufferedAmountLowThreshold(): number {
+    return this._bufferedAmountLowThreshold;
+  }
+
+  set bufferedAmountLowThreshold(threshold: number) {
+    this._bufferedAmountLowThreshold = threshold;
+    if (WebRTCModule.dataChannelSetBufferedAmountLowThreshold) {
+      WebRTCModule.dataChannelSetBufferedAmountLowThreshold(
+          this._peerConnectionId,
+          this.id,
+          threshold);
+    } else {
+      console.warn('RTCDataChannel bufferedAmountLowThreshold not supported');
+    }
+  }
+
   send(data: string | ArrayBuffer | ArrayBufferView) {
+    // The standard mandates that bufferedAmount is increased synchronously.
+    // The native side corrects it as the data is actually transmitted (see
+    // the dataChannelBufferedAmountChanged event). Where the native side does
+    // not report it, bufferedAmount is not maintained at all rather than
+    // only ever grow.
+    const countSend = !!WebRTCModule.dataChannelSetBufferedAmountLowThreshold;
+
     if (typeof data === 'string') {
+      if (countSend) {
+        this._addPendingSend(utf8ByteLength(data));
+      }
       WebRTCModule.dataChannelSend(this._peerConnectionId, this.id, data, 'text');
       return;
     }
@@ -96,9 +153,128 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
     if (!(data instanceof ArrayBuffer)) {
       throw new TypeError('Data must be either string, ArrayBuffer, or ArrayBufferView');
     }
+    if (countSend) {
+      this._addPendingSend(data.byteLength);
+    }
     WebRTCModule.dataChannelSend(this._peerConnectionId, this.id, base64.fromByteArray(new Uint8Array(data)), 'binary');
   }
 
+  _addPendingSend(byteLength: number) {
+    this._pendingSendLengths.push(byteLength);
+    this._pendingSendBytes += byteLength;
+    this.bufferedAmount += byteLength;
+  }
+
+  /**
+   * Updates bufferedAmount with the value reported natively: the
+   * bufferedAmount of the native data channel after it has been handed the
+   * first sendCount messages sent by this data channel plus the messages sent
+   * since (which the native value does not account for yet).
+   */
+  _setNativeBufferedAmount(bufferedAmount: number, sendCount: number) {
+    const lengths = this._pendingSendLengths;
+    let accounted = sendCount - this._sendCount;
+
+    if (accounted > lengths.length) {
+      accounted = lengths.length;
+    }
+    for (let i = 0; i < accounted; ++i) {
+      this._pendingSendBytes -= lengths[i];
+    }
+    if (accounted > 0) {
+      lengths.splice(0, accounted);
+      this._sendCount += accounted;
+    }
+    this.bufferedAmount = bufferedAmount + this._pendingSendBytes;
+  }
+
+  /**
+   * Enables (non-standard) framing of the messages of this data channel:
+   * messages are sent in chunks, interleaved with the chunks of the other
+   * framed data channels of the same peer connection, and are reassembled on
+   * receipt. The remote peer has to enable framing as well and the data
+   * channel has to be ordered and reliable.
+   *
+   * @param {Object|null} options - chunkSize (the size of the sent messages
+   * including the chunk header of up to 5 bytes) and maxMessageSize (in bytes,
+   * optional) or null to disable framing.
+   */
+  setFraming(options: ?{chunkSize?: number, maxMessageSize?: number}) {
+    if (WebRTCModule.dataChannelSetFraming) {
+      WebRTCModule.dataChannelSetFraming(
+          this._peerConnectionId,
+          this.id,
+          options || null);
+    } else {
+      console.warn('RTCDataChannel setFraming not supported');
+    }
+  }
+
+  /**
+   * Streams a (local) file over this data channel as a sequence of binary
+   * messages without passing its contents through JavaScript (non-standard).
+   * The progress is reported with fileprogress events.
+   *
+   * @param {string} path - The path of the file to send.
+   * @param {Object} options - chunkSize (the size of the messages in bytes)
+   * and progressInterval (the minimum number of milliseconds between
+   * fileprogress events), both optional.
+   */
+  sendFile(path: string, options?: {chunkSize?: number, progressInterval?: number}) {
+    if (WebRTCModule.dataChannelSendFile) {
+      WebRTCModule.dataChannelSendFile(
+          this._peerConnectionId,
+          this.id,
+          path,
+          options || null);
+    } else {
+      console.warn('RTCDataChannel sendFile not supported');
+    }
+  }
+
+  /**
+   * Writes the binary messages received over this data channel to a (local)
+   * file instead of dispatching them as message events (non-standard). The
+   * progress is reported with fileprogress events.
+   *
+   * @param {string|null} path - The path of the file to write or null to
+   * stop writing.
+   * @param {Object} options - size (the number of bytes after which writing
+   * stops) and progressInterval (the minimum number of milliseconds between
+   * fileprogress events), both optional.
+   */
+  receiveToFile(path: ?string, options?: {size?: number, progressInterval?: number}) {
+    if (WebRTCModule.dataChannelReceiveToFile) {
+      WebRTCModule.dataChannelReceiveToFile(
+          this._peerConnectionId,
+          this.id,
+          path || null,
+          options || null);
+    } else {
+      console.warn('RTCDataChannel receiveToFile not supported');
+    }
+  }
+
+  /**
+   * Gets the metrics of this data channel (non-standard): messagesSent,
+   * bytesSent, messagesReceived, bytesReceived and the histograms (count,
+   * mean, p50, p95, p99 and max in microseconds) sendEncodeTime,
+   * receiveDecodeTime and receiveEmitDelay.
+   *
+   * @param {Function} callback - Invoked with the metrics or null if the
+   * data channel is no longer known natively.
+   */
+  getMetrics(callback: Function) {
+    if (WebRTCModule.dataChannelGetMetrics) {
+      WebRTCModule.dataChannelGetMetrics(
+          this._peerConnectionId,
+          this.id,
+          callback);
+    } else {
+      console.warn('RTCDataChannel getMetrics not supported');
+    }
+  }
+
   close() {
     if (this.readyState === 'closing' || this.readyState === 'closed') {
       return;
@@ -138,6 +314,31 @@ export default class RTCDataChannel extends EventTarget(DATA_CHANNEL_EVENTS) {
         }
         this.dispatchEvent(new MessageEvent('message', {data}));
       }),
+      DeviceEventEmitter.addListener('dataChannelBufferedAmountChanged', ev => {
+        if (ev.peerConnectionId !== this._peerConnectionId
+            || ev.id !== this.id) {
+          return;
+        }
+        this._setNativeBufferedAmount(ev.bufferedAmount, ev.sendCount);
+        if (ev.bufferedAmountLow) {
+          this.dispatchEvent(new RTCDataChannelEvent('bufferedamountlow', {channel: this}));
+        }
+      }),
+      DeviceEventEmitter.addListener('dataChannelFileProgress', ev => {
+        if (ev.peerConnectionId !== this._peerConnectionId
+            || ev.id !== this.id) {
+          return;
+        }
+        const {bytes, direction, done, error, path, total} = ev;
+        this.dispatchEvent(new RTCEvent('fileprogress', {
+          bytes,
+          direction,
+          done,
+          error,
+          path,
+          total,
+        }));
+      }),
     ];
   }
 
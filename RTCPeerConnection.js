@@ -75,6 +75,8 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
 
   _peerConnectionId: number;
   _remoteStreams: Array<MediaStream> = [];
+  _qualitySummaryCallback: ?Function;
+  _statsDeltaCallback: ?Function;
   _subscriptions: Array<any>;
 
   /**
@@ -155,6 +157,64 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
     });
   }
 
+  /**
+   * Adds multiple remote ICE candidates in a single React Native bridge
+   * crossing (where supported by the native side).
+   *
+   * @param {Array<RTCIceCandidate>} candidates - the candidates to add
+   * @param {Function} success - invoked if all candidates were added
+   * @param {Function} failure - invoked with the array of per-candidate
+   * results if any candidate was not added
+   */
+  addIceCandidates(candidates, success, failure) {
+    if (!WebRTCModule.peerConnectionAddICECandidates) {
+      let remaining = candidates.length;
+      let failed = false;
+      const done = () => {
+        if (--remaining === 0) {
+          failed ? (failure && failure()) : (success && success());
+        }
+      };
+      if (remaining === 0) {
+        success && success();
+        return;
+      }
+      candidates.forEach(candidate =>
+        this.addIceCandidate(candidate, done, () => {
+          failed = true;
+          done();
+        }));
+      return;
+    }
+    WebRTCModule.peerConnectionAddICECandidates(
+      candidates.map(candidate => candidate.toJSON()),
+      this._peerConnectionId,
+      results => {
+        if (results.every(result => result)) {
+          success && success();
+        } else {
+          failure && failure(results);
+        }
+      });
+  }
+
+  /**
+   * Enables or disables the gathering of the local ICE candidates into
+   * batches (per sdpMid) on the native side before they cross the React
+   * Native bridge. The icecandidate events are dispatched one per candidate
+   * either way.
+   *
+   * @param {number} delayMs - the maximum number of milliseconds for which a
+   * local ICE candidate may be held back; 0 disables batching
+   */
+  setIceCandidateBatching(delayMs: number) {
+    if (WebRTCModule.peerConnectionSetICECandidateBatching) {
+      WebRTCModule.peerConnectionSetICECandidateBatching(
+        this._peerConnectionId,
+        delayMs);
+    }
+  }
+
   getStats(track, success, failure) {
     if (WebRTCModule.peerConnectionGetStats) {
       WebRTCModule.peerConnectionGetStats(
@@ -182,6 +242,132 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
     }
   }
 
+  /**
+   * Gets the statistics of this RTCPeerConnection (non-standard) as an object
+   * keyed by report id. Each report carries its type, its timestamp and its
+   * values as properties; numeric and boolean values are numbers and
+   * booleans rather than strings.
+   *
+   * @param {MediaStreamTrack} track - the track to get the statistics of or
+   * null for all statistics.
+   * @param {Array<string>} types - the types of the reports to get (e.g.
+   * 'ssrc', 'VideoBwe', 'googCandidatePair') or null for all reports.
+   * @param {Function} success - invoked with the statistics.
+   * @param {Function} failure - invoked if the statistics cannot be parsed.
+   */
+  getTypedStats(track, types, success, failure) {
+    if (WebRTCModule.peerConnectionGetTypedStats) {
+      WebRTCModule.peerConnectionGetTypedStats(
+        (track && track.id) || '',
+        types || null,
+        this._peerConnectionId,
+        stats => {
+          if (success) {
+            try {
+              stats = JSON.parse(stats);
+            } catch (e) {
+              failure && failure(e);
+              return;
+            }
+            success(stats);
+          }
+        });
+    } else {
+      console.warn('RTCPeerConnection getTypedStats not supported');
+    }
+  }
+
+  /**
+   * Subscribes to the statistics of this RTCPeerConnection: they are sampled
+   * natively at the specified interval and only the values which have changed
+   * since the previous sample cross the React Native bridge. Replaces the
+   * previous subscription, if any.
+   *
+   * @param {number} intervalMs - the number of milliseconds between two
+   * samples
+   * @param {Function} callback - invoked with each delta i.e. an object with
+   * a reports property (new reports and changed values keyed by report id and
+   * value name), a removedValues property (the names of the values which have
+   * disappeared keyed by report id) and a removed property (the ids of the
+   * reports which have disappeared)
+   */
+  subscribeStats(intervalMs: number, callback: Function) {
+    if (!WebRTCModule.peerConnectionSubscribeStats) {
+      console.warn('RTCPeerConnection subscribeStats not supported');
+      return;
+    }
+    this._statsDeltaCallback = callback;
+    WebRTCModule.peerConnectionSubscribeStats(
+      this._peerConnectionId,
+      intervalMs);
+  }
+
+  unsubscribeStats() {
+    if (this._statsDeltaCallback) {
+      this._statsDeltaCallback = undefined;
+      WebRTCModule.peerConnectionUnsubscribeStats(this._peerConnectionId);
+    }
+  }
+
+  /**
+   * Subscribes to call-quality summaries of this RTCPeerConnection: its
+   * statistics are sampled and aggregated natively and only a compact summary
+   * crosses the React Native bridge. Replaces the previous subscription, if
+   * any.
+   *
+   * @param {number} intervalMs - the number of milliseconds between two
+   * summaries
+   * @param {number} windowMs - the number of milliseconds over which the
+   * bitrate and the packet loss are computed or 0 for the default (5000)
+   * @param {Function} callback - invoked with each summary i.e. an object
+   * with a mos property (the lowest MOS of the audio SSRCs or -1) and an ssrcs
+   * property (an array of objects with ssrc, kind, direction, bitrate,
+   * packetLoss, rtt, jitter and, for audio, mos properties)
+   */
+  subscribeQuality(intervalMs: number, windowMs: number, callback: Function) {
+    if (!WebRTCModule.peerConnectionSubscribeQuality) {
+      console.warn('RTCPeerConnection subscribeQuality not supported');
+      return;
+    }
+    this._qualitySummaryCallback = callback;
+    WebRTCModule.peerConnectionSubscribeQuality(
+      this._peerConnectionId,
+      intervalMs,
+      windowMs || 0);
+  }
+
+  unsubscribeQuality() {
+    if (this._qualitySummaryCallback) {
+      this._qualitySummaryCallback = undefined;
+      WebRTCModule.peerConnectionUnsubscribeQuality(this._peerConnectionId);
+    }
+  }
+
+  /**
+   * Exports the statistics of this RTCPeerConnection recorded natively (see
+   * setStatsRecording) to a file as JSON lines, one per sample.
+   *
+   * @param {string} path - the path of the file to export to
+   * @param {Function} success - invoked with the number of exported samples
+   * @param {Function} failure - invoked with an error message
+   */
+  exportStats(path: string, success: Function, failure: ?Function) {
+    if (!WebRTCModule.peerConnectionExportStats) {
+      console.warn('RTCPeerConnection exportStats not supported');
+      return;
+    }
+    WebRTCModule.peerConnectionExportStats(
+      this._peerConnectionId,
+      path,
+      (successful, data) => {
+        if (successful) {
+          success(data);
+        } else if (failure) {
+          failure(data);
+        }
+      });
+  }
+
   getRemoteStreams() {
     return this._remoteStreams.slice();
   }
@@ -254,6 +440,28 @@ export default class RTCPeerConnection extends EventTarget(PEER_CONNECTION_EVENT
         const event = new RTCIceCandidateEvent('icecandidate', {candidate});
         this.dispatchEvent(event);
       }),
+      DeviceEventEmitter.addListener('peerConnectionGotICECandidates', ev => {
+        if (ev.id !== this._peerConnectionId) {
+          return;
+        }
+        for (const c of ev.candidates) {
+          const candidate = new RTCIceCandidate(c);
+          const event = new RTCIceCandidateEvent('icecandidate', {candidate});
+          this.dispatchEvent(event);
+        }
+      }),
+      DeviceEventEmitter.addListener('peerConnectionStatsDelta', ev => {
+        if (ev.id !== this._peerConnectionId || !this._statsDeltaCallback) {
+          return;
+        }
+        this._statsDeltaCallback(JSON.parse(ev.delta));
+      }),
+      DeviceEventEmitter.addListener('peerConnectionQualitySummary', ev => {
+        if (ev.id !== this._peerConnectionId || !this._qualitySummaryCallback) {
+          return;
+        }
+        this._qualitySummaryCallback({mos: ev.mos, ssrcs: ev.ssrcs});
+      }),
       DeviceEventEmitter.addListener('peerConnectionIceGatheringChanged', ev => {
         if (ev.id !== this._peerConnectionId) {
           return;
@@ -0,0 +1,206 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Base64 encoding and decoding tailored to the binary messages of
+ * <tt>DataChannel</tt>s which have to cross the React Native bridge as
+ * <tt>String</tt>s.
+ *
+ * Unlike <tt>android.util.Base64</tt>, encodes straight out of a (direct)
+ * <tt>ByteBuffer</tt> and decodes straight out of a <tt>String</tt> i.e. does
+ * not require intermediate <tt>byte</tt> arrays which would have to be
+ * allocated and copied for every single message.
+ */
+final class Base64Util {
+    /**
+     * The characters of the Base64 alphabet (RFC 4648, section 4) indexed by
+     * their 6-bit values.
+     */
+    private static final char[] ENCODE_TABLE
+        = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .toCharArray();
+
+    /**
+     * The 6-bit values of the characters of the Base64 alphabet indexed by
+     * the characters themselves; <tt>-1</tt> for characters outside of the
+     * alphabet.
+     */
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    private static final char PAD = '=';
+
+    static {
+        for (int i = 0; i < DECODE_TABLE.length; ++i) {
+            DECODE_TABLE[i] = -1;
+        }
+        for (int i = 0; i < ENCODE_TABLE.length; ++i) {
+            DECODE_TABLE[ENCODE_TABLE[i]] = (byte) i;
+        }
+    }
+
+    private Base64Util() {
+    }
+
+    /**
+     * Decodes a specific Base64 <tt>String</tt> (without line breaks, with or
+     * without padding) into a <tt>byte</tt> array of the exact decoded length.
+     *
+     * @param s the Base64 <tt>String</tt> to decode
+     * @return the bytes represented by <tt>s</tt>
+     * @throws IllegalArgumentException if <tt>s</tt> is not valid Base64
+     */
+    static byte[] decode(String s) {
+        byte[] bytes = new byte[decodedLength(s)];
+
+        decode(s, bytes, 0);
+        return bytes;
+    }
+
+    /**
+     * Decodes a specific Base64 <tt>String</tt> (without line breaks, with or
+     * without padding) into a specific <tt>byte</tt> array which has room for
+     * at least {@link #decodedLength} bytes at a specific offset.
+     *
+     * @param s the Base64 <tt>String</tt> to decode
+     * @param bytes the <tt>byte</tt> array to decode into
+     * @param offset the offset in <tt>bytes</tt> at which to decode
+     * @return the number of decoded bytes
+     * @throws IllegalArgumentException if <tt>s</tt> is not valid Base64
+     */
+    static int decode(String s, byte[] bytes, int offset) {
+        int length = unpaddedLength(s);
+        int b = offset;
+        int i = 0;
+
+        // Whole quantums of 4 characters into 3 bytes.
+        for (int end = length - length % 4; i < end; i += 4) {
+            int q
+                = (decodeChar(s, i) << 18)
+                    | (decodeChar(s, i + 1) << 12)
+                    | (decodeChar(s, i + 2) << 6)
+                    | decodeChar(s, i + 3);
+
+            bytes[b++] = (byte) (q >> 16);
+            bytes[b++] = (byte) (q >> 8);
+            bytes[b++] = (byte) q;
+        }
+        // The final partial quantum, if any.
+        switch (length - i) {
+        case 2: {
+            int q = (decodeChar(s, i) << 18) | (decodeChar(s, i + 1) << 12);
+
+            bytes[b++] = (byte) (q >> 16);
+            break;
+        }
+        case 3: {
+            int q
+                = (decodeChar(s, i) << 18)
+                    | (decodeChar(s, i + 1) << 12)
+                    | (decodeChar(s, i + 2) << 6);
+
+            bytes[b++] = (byte) (q >> 16);
+            bytes[b++] = (byte) (q >> 8);
+            break;
+        }
+        }
+        return b - offset;
+    }
+
+    /**
+     * Gets the number of bytes represented by a specific Base64
+     * <tt>String</tt>.
+     *
+     * @param s the Base64 <tt>String</tt>
+     * @return the number of bytes which {@link #decode} will produce out of
+     * <tt>s</tt>
+     * @throws IllegalArgumentException if the length of <tt>s</tt> is not
+     * valid for Base64
+     */
+    static int decodedLength(String s) {
+        return unpaddedLength(s) * 3 / 4;
+    }
+
+    /**
+     * Gets the length of a specific Base64 <tt>String</tt> without its
+     * padding.
+     */
+    private static int unpaddedLength(String s) {
+        int length = s.length();
+
+        // Strip the padding, it is implied by the length.
+        while (length > 0 && s.charAt(length - 1) == PAD) {
+            --length;
+        }
+        if (length % 4 == 1) {
+            throw new IllegalArgumentException("Bad Base64 length: " + length);
+        }
+        return length;
+    }
+
+    private static int decodeChar(String s, int index) {
+        char c = s.charAt(index);
+        int v = (c < DECODE_TABLE.length) ? DECODE_TABLE[c] : -1;
+
+        if (v < 0) {
+            throw new IllegalArgumentException(
+                    "Bad Base64 character at index " + index);
+        }
+        return v;
+    }
+
+    /**
+     * Encodes the remaining bytes of a specific <tt>ByteBuffer</tt> into a
+     * Base64 <tt>String</tt> (without line breaks, with padding). The position
+     * of the <tt>ByteBuffer</tt> is not modified.
+     *
+     * @param data the <tt>ByteBuffer</tt> whose remaining bytes are to be
+     * encoded
+     * @return the Base64 representation of the remaining bytes of
+     * <tt>data</tt>
+     */
+    static String encode(ByteBuffer data) {
+        final int start = data.position();
+        final int length = data.limit() - start;
+        char[] chars = new char[(length + 2) / 3 * 4];
+        int c = 0;
+        int i = start;
+
+        // Whole quantums of 3 bytes into 4 characters.
+        for (int end = start + length - length % 3; i < end; i += 3) {
+            int q
+                = ((data.get(i) & 0xff) << 16)
+                    | ((data.get(i + 1) & 0xff) << 8)
+                    | (data.get(i + 2) & 0xff);
+
+            chars[c++] = ENCODE_TABLE[(q >> 18) & 0x3f];
+            chars[c++] = ENCODE_TABLE[(q >> 12) & 0x3f];
+            chars[c++] = ENCODE_TABLE[(q >> 6) & 0x3f];
+            chars[c++] = ENCODE_TABLE[q & 0x3f];
+        }
+        // The final partial quantum, if any.
+        switch (start + length - i) {
+        case 1: {
+            int q = (data.get(i) & 0xff) << 16;
+
+            chars[c++] = ENCODE_TABLE[(q >> 18) & 0x3f];
+            chars[c++] = ENCODE_TABLE[(q >> 12) & 0x3f];
+            chars[c++] = PAD;
+            chars[c] = PAD;
+            break;
+        }
+        case 2: {
+            int q
+                = ((data.get(i) & 0xff) << 16)
+                    | ((data.get(i + 1) & 0xff) << 8);
+
+            chars[c++] = ENCODE_TABLE[(q >> 18) & 0x3f];
+            chars[c++] = ENCODE_TABLE[(q >> 12) & 0x3f];
+            chars[c++] = ENCODE_TABLE[(q >> 6) & 0x3f];
+            chars[c] = PAD;
+            break;
+        }
+        }
+        return new String(chars);
+    }
+}
@@ -0,0 +1,103 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A pool of <tt>ByteBuffer</tt>s in power-of-two size classes into which the
+ * messages sent over <tt>DataChannel</tt>s are encoded (text) or decoded
+ * (binary) so that sending at a high rate does not allocate a new
+ * <tt>byte</tt> array for every message.
+ *
+ * The pooled <tt>ByteBuffer</tt>s are heap (rather than direct) ones because
+ * <tt>DataChannel.send</tt> copies the remaining bytes into a <tt>byte</tt>
+ * array before it crosses into native code anyway and a copy out of a heap
+ * <tt>ByteBuffer</tt> is a plain array copy.
+ */
+class ByteBufferPool {
+    /**
+     * The binary logarithm of the capacity of the smallest size class.
+     */
+    private static final int MIN_SIZE_CLASS = 8; // 256 bytes
+
+    /**
+     * The binary logarithm of the capacity of the largest size class. Larger
+     * buffers are not pooled.
+     */
+    private static final int MAX_SIZE_CLASS = 20; // 1 MiB
+
+    /**
+     * The maximum number of pooled buffers per size class.
+     */
+    private static final int MAX_BUFFERS_PER_SIZE_CLASS = 4;
+
+    /**
+     * The pooled buffers (as stacks of {@link #counts} elements) indexed by
+     * size class minus {@link #MIN_SIZE_CLASS}. Synchronized on
+     * {@code ByteBufferPool.class}.
+     */
+    private static final ByteBuffer[][] buffers
+        = new ByteBuffer[MAX_SIZE_CLASS - MIN_SIZE_CLASS + 1]
+                [MAX_BUFFERS_PER_SIZE_CLASS];
+
+    private static final int[] counts = new int[buffers.length];
+
+    /**
+     * Acquires a cleared <tt>ByteBuffer</tt> with a capacity of at least a
+     * specific number of bytes. The returned buffer is to be released with
+     * {@link #release} once it is no longer used.
+     *
+     * @param capacity the minimum capacity of the buffer
+     * @return a cleared <tt>ByteBuffer</tt> backed by an array
+     */
+    static ByteBuffer acquire(int capacity) {
+        int sizeClass = sizeClass(capacity);
+
+        if (sizeClass > MAX_SIZE_CLASS) {
+            return ByteBuffer.allocate(capacity);
+        }
+        synchronized (ByteBufferPool.class) {
+            int i = sizeClass - MIN_SIZE_CLASS;
+            if (counts[i] > 0) {
+                ByteBuffer buffer = buffers[i][--counts[i]];
+                buffers[i][counts[i]] = null;
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocate(1 << sizeClass);
+    }
+
+    /**
+     * Returns a <tt>ByteBuffer</tt> acquired with {@link #acquire} to this
+     * pool. The caller must not use it afterwards.
+     *
+     * @param buffer the <tt>ByteBuffer</tt> to release
+     */
+    static void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int sizeClass = sizeClass(capacity);
+
+        // Only buffers allocated by this pool are of a power-of-two capacity
+        // within the pooled size classes.
+        if (sizeClass > MAX_SIZE_CLASS || (1 << sizeClass) != capacity) {
+            return;
+        }
+        synchronized (ByteBufferPool.class) {
+            int i = sizeClass - MIN_SIZE_CLASS;
+            if (counts[i] < MAX_BUFFERS_PER_SIZE_CLASS) {
+                buffers[i][counts[i]++] = buffer;
+            }
+        }
+    }
+
+    /**
+     * Gets the size class (i.e. the binary logarithm of the capacity rounded
+     * up to a power of two) of a specific capacity.
+     */
+    private static int sizeClass(int capacity) {
+        if (capacity <= (1 << MIN_SIZE_CLASS)) {
+            return MIN_SIZE_CLASS;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1);
+    }
+}
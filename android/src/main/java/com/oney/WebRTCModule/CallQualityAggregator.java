@@ -0,0 +1,325 @@
+package com.oney.WebRTCModule;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import android.os.Handler;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.StatsReport;
+
+/**
+ * Aggregates the statistics of a <tt>PeerConnection</tt> natively into
+ * compact call-quality summaries so that JavaScript does not have to compute
+ * them out of raw statistics. Keeps a rolling window of samples per SSRC and
+ * computes, over the window, the bitrate, the packet loss and, for audio, an
+ * E-model (ITU-T G.107) MOS estimate; the RTT and the jitter are the latest
+ * reported ones.
+ *
+ * A summary is sent to JavaScript as a <tt>peerConnectionQualitySummary</tt>
+ * event after each sample:
+ * <pre>
+ * {
+ *   id: &lt;peer connection id&gt;,
+ *   mos: &lt;the lowest MOS of the audio SSRCs or -1&gt;,
+ *   ssrcs: [{
+ *     ssrc, kind ("audio" or "video"), direction ("send" or "recv"),
+ *     bitrate (bits per second), packetLoss (percent), rtt (ms),
+ *     jitter (ms), mos (audio only)
+ *   }, ...]
+ * }
+ * </pre>
+ * The RTT and the jitter are <tt>-1</tt> if they are not reported. The RTT is
+ * reported on the send SSRCs only so the RTT of a receive SSRC is the one of
+ * the send SSRC of the same kind or, failing that, of the active candidate
+ * pair.
+ */
+class CallQualityAggregator implements StatsSampler.Listener {
+    /**
+     * The default number of milliseconds over which the bitrate and the
+     * packet loss are computed.
+     */
+    static final int DEFAULT_WINDOW_MS = 5000;
+
+    private final int peerConnectionId;
+
+    private final StatsSampler sampler;
+
+    /**
+     * The ids of the reports seen in the sample being aggregated.
+     */
+    private final Set<String> seen = new HashSet<String>();
+
+    private final WebRTCModule webRTCModule;
+
+    private final int windowMs;
+
+    /**
+     * The rolling windows by SSRC report id.
+     */
+    private final Map<String, SsrcWindow> windows
+        = new HashMap<String, SsrcWindow>();
+
+    CallQualityAggregator(
+            WebRTCModule webRTCModule,
+            int peerConnectionId,
+            PeerConnection peerConnection,
+            Handler handler,
+            int intervalMs,
+            int windowMs) {
+        this.webRTCModule = webRTCModule;
+        this.peerConnectionId = peerConnectionId;
+        this.windowMs = windowMs;
+
+        sampler = new StatsSampler(peerConnection, handler, intervalMs, this);
+    }
+
+    /**
+     * Estimates the MOS of a voice call with the E-model (ITU-T G.107) with
+     * the default parameters, a codec without equipment impairment (e.g.
+     * Opus) and the given transmission parameters.
+     *
+     * @param rtt the round-trip time in milliseconds
+     * @param jitter the jitter in milliseconds
+     * @param packetLoss the packet loss in percent
+     * @return the MOS between 1 and 4.5
+     */
+    static double estimateMOS(double rtt, double jitter, double packetLoss) {
+        // The one-way delay including the jitter buffer (twice the jitter)
+        // and the codec (10 ms).
+        double d = Math.max(0, rtt) / 2 + 2 * Math.max(0, jitter) + 10;
+        double id = 0.024 * d;
+        if (d > 177.3) {
+            id += 0.11 * (d - 177.3);
+        }
+
+        // Equipment impairment: Ie = 0, Bpl = 10 (random loss).
+        double ppl = Math.max(0, packetLoss);
+        double ieEff = 95 * ppl / (ppl + 10);
+
+        double r = 93.2 - id - ieEff;
+        if (r <= 0) {
+            return 1;
+        }
+        if (r >= 100) {
+            return 4.5;
+        }
+        return 1 + 0.035 * r + 7e-6 * r * (r - 60) * (100 - r);
+    }
+
+    private static double getDouble(StatsReport report, String name) {
+        for (StatsReport.Value v : report.values) {
+            if (name.equals(v.name)) {
+                try {
+                    return Double.parseDouble(v.value);
+                } catch (NumberFormatException e) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static String getString(StatsReport report, String name) {
+        for (StatsReport.Value v : report.values) {
+            if (name.equals(v.name)) {
+                return v.value;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void onStatsSampled(StatsReport[] reports) {
+        WritableArray ssrcs = Arguments.createArray();
+        double minMOS = -1;
+
+        // The RTTs of the receive SSRCs (see the class comment).
+        double audioRtt = -1;
+        double videoRtt = -1;
+        double connectionRtt = -1;
+
+        for (StatsReport report : reports) {
+            if ("ssrc".equals(report.type)) {
+                if (report.id.endsWith("_send")) {
+                    double rtt = getDouble(report, "googRtt");
+                    String kind = getString(report, "mediaType");
+                    if ("audio".equals(kind)) {
+                        audioRtt = Math.max(audioRtt, rtt);
+                    } else if ("video".equals(kind)) {
+                        videoRtt = Math.max(videoRtt, rtt);
+                    }
+                }
+            } else if ("googCandidatePair".equals(report.type)
+                    && "true".equals(
+                            getString(report, "googActiveConnection"))) {
+                connectionRtt = getDouble(report, "googRtt");
+            }
+        }
+        if (audioRtt < 0) {
+            audioRtt = connectionRtt;
+        }
+        if (videoRtt < 0) {
+            videoRtt = connectionRtt;
+        }
+
+        for (StatsReport report : reports) {
+            if (!"ssrc".equals(report.type)) {
+                continue;
+            }
+            seen.add(report.id);
+
+            SsrcWindow window = windows.get(report.id);
+            if (window == null) {
+                window = new SsrcWindow();
+                windows.put(report.id, window);
+            }
+
+            WritableMap summary = window.add(report, audioRtt, videoRtt);
+            if (summary != null) {
+                if (summary.hasKey("mos")) {
+                    double mos = summary.getDouble("mos");
+                    if (minMOS < 0 || mos < minMOS) {
+                        minMOS = mos;
+                    }
+                }
+                ssrcs.pushMap(summary);
+            }
+        }
+        for (Iterator<String> i = windows.keySet().iterator(); i.hasNext();) {
+            if (!seen.contains(i.next())) {
+                i.remove();
+            }
+        }
+        seen.clear();
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", peerConnectionId);
+        params.putDouble("mos", minMOS);
+        params.putArray("ssrcs", ssrcs);
+        webRTCModule.sendEvent("peerConnectionQualitySummary", params);
+    }
+
+    void start() {
+        sampler.start();
+    }
+
+    void stop() {
+        sampler.stop();
+    }
+
+    /**
+     * A sample of the cumulative counters of an SSRC.
+     */
+    private static class Sample {
+        final double bytes;
+
+        final double packets;
+
+        final double packetsLost;
+
+        /**
+         * The time of the sample in milliseconds.
+         */
+        final double timestamp;
+
+        Sample(
+                double timestamp,
+                double bytes,
+                double packets,
+                double packetsLost) {
+            this.timestamp = timestamp;
+            this.bytes = bytes;
+            this.packets = packets;
+            this.packetsLost = packetsLost;
+        }
+    }
+
+    /**
+     * The rolling window of the samples of an SSRC.
+     */
+    private class SsrcWindow {
+        private final ArrayDeque<Sample> samples = new ArrayDeque<Sample>();
+
+        /**
+         * Adds a sample to this window and summarizes the window.
+         *
+         * @param report the SSRC report to sample
+         * @param audioRtt the RTT of the receive audio SSRCs
+         * @param videoRtt the RTT of the receive video SSRCs
+         * @return the summary of the window or <tt>null</tt> if the report is
+         * not of an SSRC which carries media
+         */
+        WritableMap add(StatsReport report, double audioRtt, double videoRtt) {
+            boolean send = report.id.endsWith("_send");
+            double bytes
+                = getDouble(report, send ? "bytesSent" : "bytesReceived");
+            double packets
+                = getDouble(report, send ? "packetsSent" : "packetsReceived");
+            if (bytes < 0 || packets < 0) {
+                return null;
+            }
+
+            Sample last = new Sample(
+                    report.timestamp,
+                    bytes,
+                    packets,
+                    Math.max(0, getDouble(report, "packetsLost")));
+            samples.add(last);
+            // Keep the last sample older than the window as the start of the
+            // window.
+            while (samples.size() > 2) {
+                Iterator<Sample> i = samples.iterator();
+                i.next();
+                if (i.next().timestamp > last.timestamp - windowMs) {
+                    break;
+                }
+                samples.poll();
+            }
+
+            Sample first = samples.peek();
+            double duration = last.timestamp - first.timestamp;
+            double bitrate
+                = duration > 0
+                    ? Math.max(0, last.bytes - first.bytes) * 8000 / duration
+                    : 0;
+            double lost = Math.max(0, last.packetsLost - first.packetsLost);
+            double packetCount = Math.max(0, last.packets - first.packets);
+            // The packets lost are not among the packets received but are
+            // among the packets sent.
+            double expected = send ? packetCount : packetCount + lost;
+            double packetLoss = expected > 0 ? 100 * lost / expected : 0;
+            double jitter = getDouble(report, "googJitterReceived");
+            String kind = getString(report, "mediaType");
+            double rtt;
+            if (send) {
+                rtt = getDouble(report, "googRtt");
+            } else {
+                rtt = "audio".equals(kind) ? audioRtt : videoRtt;
+            }
+
+            WritableMap summary = Arguments.createMap();
+            summary.putString("ssrc", getString(report, "ssrc"));
+            summary.putString("kind", kind);
+            summary.putString("direction", send ? "send" : "recv");
+            summary.putDouble("bitrate", Math.round(bitrate));
+            summary.putDouble("packetLoss", packetLoss);
+            summary.putDouble("rtt", rtt);
+            summary.putDouble("jitter", jitter);
+            if ("audio".equals(kind)) {
+                summary.putDouble(
+                    "mos",
+                    estimateMOS(rtt, jitter, packetLoss));
+            }
+            return summary;
+        }
+    }
+}
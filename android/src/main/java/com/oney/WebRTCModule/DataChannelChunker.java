@@ -0,0 +1,347 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+
+import android.os.Handler;
+import android.util.Log;
+import android.util.SparseArray;
+
+import org.webrtc.DataChannel;
+
+/**
+ * Splits the messages sent over the (framed) <tt>DataChannel</tt>s of a
+ * <tt>PeerConnection</tt> into chunks and sends the chunks of the various
+ * <tt>DataChannel</tt>s in round-robin order so that a large message does not
+ * monopolize the SCTP association. A <tt>DataChannel</tt> is skipped while its
+ * <tt>bufferedAmount</tt> is high and resumed when it drains (i.e. native
+ * memory does not grow without bounds).
+ *
+ * Every chunk is sent as a binary message which starts with a header:
+ * <pre>
+ * flags (1 byte): FLAG_FIRST | FLAG_LAST | FLAG_TEXT
+ * length (4 bytes, big-endian, FLAG_FIRST only): the length of the message
+ * </pre>
+ * followed by (a part of) the message. The remote peer has to enable framing
+ * on its side of the <tt>DataChannel</tt> as well (see
+ * {@link DataChannelReassembler}) and the <tt>DataChannel</tt> has to be
+ * ordered and reliable.
+ *
+ * The messages queued to be sent are held on the Java heap rather than in the
+ * send buffer of the <tt>DataChannel</tt> so their bytes are reported as part
+ * of its <tt>bufferedAmount</tt> (see {@link Channel#getQueuedBytes()}).
+ */
+class DataChannelChunker {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The default size of a chunk (including its header) i.e. of the messages
+     * which are sent over the <tt>DataChannel</tt>. 16 KiB is the largest
+     * message size which all browsers interoperate with.
+     */
+    static final int DEFAULT_CHUNK_SIZE = 16 * 1024;
+
+    static final int FLAG_FIRST = 1;
+
+    static final int FLAG_LAST = 2;
+
+    static final int FLAG_TEXT = 4;
+
+    /**
+     * The maximum size of a chunk header.
+     */
+    static final int HEADER_SIZE = 5;
+
+    /**
+     * The <tt>bufferedAmount</tt> above which a <tt>DataChannel</tt> is no
+     * longer sent chunks to.
+     */
+    private static final long HIGH_WATER_MARK = 1024 * 1024;
+
+    /**
+     * The <tt>bufferedAmount</tt> at or below which a <tt>DataChannel</tt>
+     * skipped because of {@link #HIGH_WATER_MARK} is resumed.
+     */
+    private static final long LOW_WATER_MARK = 256 * 1024;
+
+    /**
+     * The maximum number of chunks sent by one run of {@link #sendRunnable}
+     * before it yields the thread of {@link #handler} to other work.
+     */
+    private static final int MAX_CHUNKS_PER_RUN = 16;
+
+    /**
+     * The framed <tt>DataChannel</tt>s (by id) which have messages to send.
+     */
+    private final ArrayDeque<Channel> ready = new ArrayDeque<Channel>();
+
+    /**
+     * The framed <tt>DataChannel</tt>s by id.
+     */
+    private final SparseArray<Channel> channels = new SparseArray<Channel>();
+
+    private final Handler handler;
+
+    /**
+     * Whether {@link #sendRunnable} has been posted to {@link #handler}.
+     */
+    private boolean scheduled;
+
+    private final Runnable sendRunnable = new Runnable() {
+        @Override
+        public void run() {
+            sendChunks();
+        }
+    };
+
+    DataChannelChunker(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Enables framing on a specific <tt>DataChannel</tt>.
+     *
+     * @return the <tt>Channel</tt> which queues the messages to be sent over
+     * <tt>dataChannel</tt>
+     */
+    synchronized Channel addChannel(
+            int dataChannelId,
+            DataChannel dataChannel,
+            int chunkSize) {
+        removeChannel(dataChannelId);
+
+        Channel channel = new Channel(dataChannel, chunkSize);
+        channels.put(dataChannelId, channel);
+        return channel;
+    }
+
+    synchronized void clear() {
+        for (int i = 0, size = channels.size(); i < size; ++i) {
+            channels.valueAt(i).clearMessages();
+        }
+        channels.clear();
+        ready.clear();
+        handler.removeCallbacks(sendRunnable);
+        scheduled = false;
+    }
+
+    synchronized boolean hasChannel(int dataChannelId) {
+        return channels.get(dataChannelId) != null;
+    }
+
+    /**
+     * Notifies this <tt>DataChannelChunker</tt> that the
+     * <tt>bufferedAmount</tt> of a specific <tt>DataChannel</tt> has changed.
+     */
+    void onBufferedAmountChange(
+            final int dataChannelId,
+            long bufferedAmount) {
+        // XXX Invoked on the WebRTC signaling thread, possibly from within
+        // DataChannel.send which sendChunks invokes with the lock of this
+        // instance held. Do not take the lock here.
+        if (bufferedAmount <= LOW_WATER_MARK) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    unblock(dataChannelId);
+                }
+            });
+        }
+    }
+
+    synchronized void removeChannel(int dataChannelId) {
+        Channel channel = channels.get(dataChannelId);
+        if (channel != null) {
+            channels.remove(dataChannelId);
+            ready.remove(channel);
+            channel.clearMessages();
+        }
+    }
+
+    /**
+     * Resumes sending chunks to a specific <tt>DataChannel</tt> which has been
+     * skipped because of its high <tt>bufferedAmount</tt>.
+     */
+    private synchronized void unblock(int dataChannelId) {
+        Channel channel = channels.get(dataChannelId);
+        if (channel != null && channel.blocked) {
+            channel.blocked = false;
+            if (!channel.messages.isEmpty()) {
+                ready.add(channel);
+                schedule();
+            }
+        }
+    }
+
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            handler.post(sendRunnable);
+        }
+    }
+
+    /**
+     * Queues a message to be sent in chunks over a specific framed
+     * <tt>DataChannel</tt>. The remaining bytes of the message are copied
+     * i.e. the caller may reuse <tt>data</tt> once this method returns.
+     *
+     * @return <tt>false</tt> if the <tt>DataChannel</tt> is not framed
+     */
+    synchronized boolean send(
+            int dataChannelId,
+            ByteBuffer data,
+            boolean binary) {
+        Channel channel = channels.get(dataChannelId);
+        if (channel == null) {
+            return false;
+        }
+
+        byte[] bytes = new byte[data.remaining()];
+        data.duplicate().get(bytes);
+
+        boolean idle = channel.messages.isEmpty();
+        channel.messages.add(new Message(bytes, binary));
+        channel.queuedBytes += bytes.length;
+        if (idle && !channel.blocked) {
+            ready.add(channel);
+            schedule();
+        }
+        return true;
+    }
+
+    /**
+     * Sends chunks of the queued messages, one chunk per ready
+     * <tt>DataChannel</tt> in turn.
+     */
+    private synchronized void sendChunks() {
+        scheduled = false;
+        for (int i = 0; i < MAX_CHUNKS_PER_RUN && !ready.isEmpty(); ++i) {
+            Channel channel = ready.poll();
+            if (!channel.sendChunk()) {
+                // The DataChannel has failed, drop whatever it has queued.
+                Log.e(TAG, "Failed to send a chunk, dropping "
+                    + channel.messages.size() + " queued message(s)");
+                channel.clearMessages();
+            } else if (channel.dataChannel.bufferedAmount() > HIGH_WATER_MARK) {
+                channel.blocked = true;
+            }
+            if (!channel.messages.isEmpty() && !channel.blocked) {
+                ready.add(channel);
+            }
+        }
+        if (!ready.isEmpty()) {
+            schedule();
+        }
+    }
+
+    /**
+     * A framed <tt>DataChannel</tt> and the messages queued to be sent over
+     * it.
+     */
+    static class Channel {
+        /**
+         * Whether the <tt>bufferedAmount</tt> of {@link #dataChannel} has
+         * exceeded {@link #HIGH_WATER_MARK} and has not dropped to
+         * {@link #LOW_WATER_MARK} yet.
+         */
+        boolean blocked;
+
+        /**
+         * The size of a chunk including its header i.e. the maximum size of
+         * the messages sent over {@link #dataChannel}. Greater than
+         * {@link #HEADER_SIZE}.
+         */
+        final int chunkSize;
+
+        final DataChannel dataChannel;
+
+        final ArrayDeque<Message> messages = new ArrayDeque<Message>();
+
+        /**
+         * The number of the bytes of {@link #messages} which have not been
+         * sent yet. Written with the lock of the <tt>DataChannelChunker</tt>
+         * held, read without it (see {@link #getQueuedBytes()}).
+         */
+        volatile long queuedBytes;
+
+        /**
+         * The buffer into which a chunk is assembled. Reused because
+         * <tt>DataChannel.send</tt> copies the bytes before it returns.
+         */
+        final ByteBuffer scratch;
+
+        Channel(DataChannel dataChannel, int chunkSize) {
+            this.dataChannel = dataChannel;
+            this.chunkSize = chunkSize;
+            scratch = ByteBuffer.allocate(chunkSize);
+        }
+
+        void clearMessages() {
+            messages.clear();
+            queuedBytes = 0;
+        }
+
+        /**
+         * Gets the number of the bytes of the messages queued to be sent over
+         * {@link #dataChannel} which have not been handed to it yet. May be
+         * invoked on any thread without the lock of the
+         * <tt>DataChannelChunker</tt> (e.g. from within
+         * <tt>DataChannel.Observer.onBufferedAmountChange</tt>).
+         */
+        long getQueuedBytes() {
+            return queuedBytes;
+        }
+
+        /**
+         * Sends the next chunk of the first queued message.
+         *
+         * @return the value returned by <tt>DataChannel.send</tt>
+         */
+        boolean sendChunk() {
+            Message message = messages.peek();
+            int flags = message.binary ? 0 : FLAG_TEXT;
+            int length
+                = Math.min(
+                    chunkSize - HEADER_SIZE,
+                    message.data.length - message.offset);
+
+            scratch.clear();
+            if (message.offset == 0) {
+                flags |= FLAG_FIRST;
+            }
+            if (message.offset + length == message.data.length) {
+                flags |= FLAG_LAST;
+                messages.poll();
+            }
+            scratch.put((byte) flags);
+            if ((flags & FLAG_FIRST) != 0) {
+                scratch.putInt(message.data.length);
+            }
+            scratch.put(message.data, message.offset, length);
+            scratch.flip();
+            message.offset += length;
+            queuedBytes -= length;
+
+            return dataChannel.send(new DataChannel.Buffer(scratch, true));
+        }
+    }
+
+    /**
+     * A message queued to be sent in chunks.
+     */
+    private static class Message {
+        final boolean binary;
+
+        final byte[] data;
+
+        /**
+         * The offset in {@link #data} of the next chunk to be sent.
+         */
+        int offset;
+
+        Message(byte[] data, boolean binary) {
+            this.data = data;
+            this.binary = binary;
+        }
+    }
+}
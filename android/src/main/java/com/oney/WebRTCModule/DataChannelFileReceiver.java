@@ -0,0 +1,144 @@
+package com.oney.WebRTCModule;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * Writes the binary messages received over a <tt>DataChannel</tt> to a file
+ * without passing them through JavaScript. The (direct) <tt>ByteBuffer</tt>s
+ * delivered by the <tt>DataChannel</tt> are written with a
+ * <tt>FileChannel</tt> as they are.
+ *
+ * The progress is reported to JavaScript with
+ * <tt>dataChannelFileProgress</tt> events, at most one per progress interval
+ * and a final one when the expected number of bytes has been received or the
+ * transfer has failed.
+ */
+class DataChannelFileReceiver {
+    private final static String TAG = WebRTCModule.TAG;
+
+    private FileChannel channel;
+
+    private final int dataChannelId;
+
+    /**
+     * The time of the last progress event (in the time base of
+     * <tt>SystemClock.elapsedRealtime()</tt>).
+     */
+    private long lastProgressTime;
+
+    private final String path;
+
+    private final int peerConnectionId;
+
+    private final int progressIntervalMs;
+
+    private long received;
+
+    /**
+     * The number of bytes expected to be received or <tt>-1</tt> if the file
+     * is to be written until this receiver is closed.
+     */
+    private final long size;
+
+    private final WebRTCModule webRTCModule;
+
+    DataChannelFileReceiver(
+            WebRTCModule webRTCModule,
+            int peerConnectionId,
+            int dataChannelId,
+            String path,
+            long size,
+            int progressIntervalMs)
+        throws IOException {
+        this.webRTCModule = webRTCModule;
+        this.peerConnectionId = peerConnectionId;
+        this.dataChannelId = dataChannelId;
+        this.path = path;
+        this.size = size;
+        this.progressIntervalMs = progressIntervalMs;
+
+        channel = new FileOutputStream(path).getChannel();
+    }
+
+    /**
+     * Closes the file. Reports the end of the transfer unless it has been
+     * reported already.
+     */
+    synchronized void close() {
+        finish(size >= 0 && received < size ? "Cancelled" : null);
+    }
+
+    private void finish(String error) {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            if (error == null) {
+                error = e.getMessage();
+            }
+        }
+        channel = null;
+        sendProgressEvent(error == null, error);
+    }
+
+    /**
+     * Writes a received message to the file.
+     *
+     * @param data the received message
+     * @return <tt>true</tt> if the transfer has ended (i.e. this receiver is
+     * done and is to be discarded); otherwise, <tt>false</tt>
+     */
+    synchronized boolean onMessage(ByteBuffer data) {
+        if (channel == null) {
+            return true;
+        }
+
+        try {
+            while (data.hasRemaining()) {
+                received += channel.write(data);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write " + path + ": " + e.getMessage());
+            finish(e.getMessage());
+            return true;
+        }
+
+        if (size >= 0 && received >= size) {
+            finish(received == size ? null : "Received more than expected");
+            return true;
+        }
+
+        long now = SystemClock.elapsedRealtime();
+        if (now - lastProgressTime >= progressIntervalMs) {
+            lastProgressTime = now;
+            sendProgressEvent(false, null);
+        }
+        return false;
+    }
+
+    private void sendProgressEvent(boolean done, String error) {
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", dataChannelId);
+        params.putInt("peerConnectionId", peerConnectionId);
+        params.putString("direction", "receive");
+        params.putString("path", path);
+        params.putDouble("bytes", received);
+        params.putDouble("total", size);
+        params.putBoolean("done", done);
+        if (error != null) {
+            params.putString("error", error);
+        }
+        webRTCModule.sendEvent("dataChannelFileProgress", params);
+    }
+}
@@ -0,0 +1,252 @@
+package com.oney.WebRTCModule;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.DataChannel;
+
+/**
+ * Streams a file over a <tt>DataChannel</tt> as a sequence of binary messages
+ * without passing its contents through JavaScript. The file is read with a
+ * <tt>FileChannel</tt> into a direct <tt>ByteBuffer</tt> which is handed to
+ * <tt>DataChannel.send</tt> as it is. Reading pauses while the
+ * <tt>bufferedAmount</tt> of the <tt>DataChannel</tt> is high.
+ *
+ * The chunks are read with the lock of this instance held but are sent
+ * without it because <tt>DataChannel.send</tt> blocks until the WebRTC
+ * signaling thread has executed it.
+ *
+ * The progress is reported to JavaScript with
+ * <tt>dataChannelFileProgress</tt> events, at most one per progress interval
+ * and a final one when the transfer completes or fails.
+ */
+class DataChannelFileSender implements Runnable {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The <tt>bufferedAmount</tt> above which reading the file is paused.
+     */
+    private static final long HIGH_WATER_MARK = 1024 * 1024;
+
+    /**
+     * The <tt>bufferedAmount</tt> at or below which paused reading resumes.
+     */
+    private static final long LOW_WATER_MARK = 256 * 1024;
+
+    /**
+     * The maximum number of chunks sent by one run before the thread of
+     * {@link #handler} is yielded to other work.
+     */
+    private static final int MAX_CHUNKS_PER_RUN = 16;
+
+    /**
+     * The buffer into which a chunk is read. Used on the thread of
+     * {@link #handler} only.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * The file being sent or <tt>null</tt> once the transfer has completed,
+     * failed or been canceled. Synchronized on this instance.
+     */
+    private FileChannel channel;
+
+    private final DataChannel dataChannel;
+
+    private final int dataChannelId;
+
+    private final Handler handler;
+
+    /**
+     * The time of the last progress event (in the time base of
+     * <tt>SystemClock.elapsedRealtime()</tt>).
+     */
+    private long lastProgressTime;
+
+    private final String path;
+
+    /**
+     * Whether reading is paused until the <tt>bufferedAmount</tt> of
+     * {@link #dataChannel} drops to {@link #LOW_WATER_MARK}. Whoever clears
+     * it resumes reading.
+     */
+    private final AtomicBoolean paused = new AtomicBoolean();
+
+    private final int peerConnectionId;
+
+    private final int progressIntervalMs;
+
+    /**
+     * The number of bytes sent. Used on the thread of {@link #handler} only
+     * (once the transfer has started).
+     */
+    private long sent;
+
+    private long size;
+
+    private final WebRTCModule webRTCModule;
+
+    DataChannelFileSender(
+            WebRTCModule webRTCModule,
+            int peerConnectionId,
+            int dataChannelId,
+            DataChannel dataChannel,
+            String path,
+            int chunkSize,
+            int progressIntervalMs) {
+        this.webRTCModule = webRTCModule;
+        this.peerConnectionId = peerConnectionId;
+        this.dataChannelId = dataChannelId;
+        this.dataChannel = dataChannel;
+        this.path = path;
+        this.progressIntervalMs = progressIntervalMs;
+
+        buffer = ByteBuffer.allocateDirect(chunkSize);
+        handler = webRTCModule.getBackgroundHandler();
+    }
+
+    /**
+     * Stops the transfer (if it is still in progress) without reporting it.
+     */
+    synchronized void cancel() {
+        handler.removeCallbacks(this);
+        closeChannel();
+    }
+
+    private void closeChannel() {
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                Log.d(TAG, "Failed to close " + path);
+            }
+            channel = null;
+        }
+    }
+
+    private void finish(String error) {
+        closeChannel();
+        sendProgressEvent(error == null, error);
+    }
+
+    void onBufferedAmountChange(long bufferedAmount) {
+        // XXX Invoked on the WebRTC signaling thread, possibly from within
+        // DataChannel.send. Do not take the lock of this instance here.
+        if (bufferedAmount <= LOW_WATER_MARK
+                && paused.compareAndSet(true, false)) {
+            handler.post(this);
+        }
+    }
+
+    /**
+     * Pauses reading until the <tt>bufferedAmount</tt> of
+     * {@link #dataChannel} drops to {@link #LOW_WATER_MARK}.
+     *
+     * @return <tt>true</tt> if reading has been paused; <tt>false</tt> if the
+     * <tt>bufferedAmount</tt> has dropped in the meantime and reading is to
+     * continue
+     */
+    private boolean pause() {
+        // Pause before the bufferedAmount is read again so that a drop which
+        // happens in between is not missed by onBufferedAmountChange.
+        paused.set(true);
+        if (dataChannel.bufferedAmount() > LOW_WATER_MARK) {
+            return true;
+        }
+        // Unless onBufferedAmountChange has resumed reading already.
+        return !paused.compareAndSet(true, false);
+    }
+
+    @Override
+    public void run() {
+        for (int i = 0; i < MAX_CHUNKS_PER_RUN; ++i) {
+            if (dataChannel.bufferedAmount() > HIGH_WATER_MARK && pause()) {
+                return;
+            }
+
+            synchronized (this) {
+                if (channel == null) {
+                    return;
+                }
+                buffer.clear();
+                try {
+                    if (channel.read(buffer) < 0) {
+                        finish(null);
+                        return;
+                    }
+                } catch (IOException e) {
+                    finish(e.getMessage());
+                    return;
+                }
+                buffer.flip();
+            }
+
+            int length = buffer.remaining();
+            if (!dataChannel.send(new DataChannel.Buffer(buffer, true))) {
+                synchronized (this) {
+                    if (channel != null) {
+                        finish("Failed to send");
+                    }
+                }
+                return;
+            }
+            sent += length;
+        }
+
+        synchronized (this) {
+            if (channel == null) {
+                return;
+            }
+            long now = SystemClock.elapsedRealtime();
+            if (now - lastProgressTime >= progressIntervalMs) {
+                lastProgressTime = now;
+                sendProgressEvent(false, null);
+            }
+            handler.post(this);
+        }
+    }
+
+    private void sendProgressEvent(boolean done, String error) {
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", dataChannelId);
+        params.putInt("peerConnectionId", peerConnectionId);
+        params.putString("direction", "send");
+        params.putString("path", path);
+        params.putDouble("bytes", sent);
+        params.putDouble("total", size);
+        params.putBoolean("done", done);
+        if (error != null) {
+            params.putString("error", error);
+        }
+        webRTCModule.sendEvent("dataChannelFileProgress", params);
+    }
+
+    /**
+     * Opens the file and starts the transfer.
+     *
+     * @return <tt>true</tt> if the file has been opened; otherwise,
+     * <tt>false</tt> (and a failure has been reported)
+     */
+    synchronized boolean start() {
+        try {
+            channel = new FileInputStream(path).getChannel();
+            size = channel.size();
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open " + path + ": " + e.getMessage());
+            finish(e.getMessage());
+            return false;
+        }
+        handler.post(this);
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * The counters and latency histograms of a <tt>DataChannel</tt> which tell
+ * apart the time spent in the native layer from the time spent waiting for
+ * the React Native bridge:
+ * <ul>
+ * <li>the numbers of messages and bytes sent and received;</li>
+ * <li><tt>sendEncodeTime</tt>: the time it takes to turn a message passed
+ * over the bridge into bytes (UTF-8 encoding or Base64 decoding);</li>
+ * <li><tt>receiveDecodeTime</tt>: the time it takes to turn received bytes
+ * into an event (UTF-8 decoding or Base64 encoding);</li>
+ * <li><tt>receiveEmitDelay</tt>: the time from the receipt of a message by the
+ * native layer until its event is emitted to JavaScript (including the time
+ * it waits in an event batch).</li>
+ * </ul>
+ *
+ * Thread-safe.
+ */
+class DataChannelMetrics {
+    private long bytesReceived;
+
+    private long bytesSent;
+
+    private long messagesReceived;
+
+    private long messagesSent;
+
+    final LatencyHistogram receiveDecodeTime = new LatencyHistogram();
+
+    final LatencyHistogram receiveEmitDelay = new LatencyHistogram();
+
+    final LatencyHistogram sendEncodeTime = new LatencyHistogram();
+
+    synchronized void onMessageReceived(int bytes) {
+        ++messagesReceived;
+        bytesReceived += bytes;
+    }
+
+    synchronized void onMessageSent(int bytes) {
+        ++messagesSent;
+        bytesSent += bytes;
+    }
+
+    /**
+     * Describes these metrics to JavaScript. The durations are in
+     * microseconds.
+     */
+    WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+
+        synchronized (this) {
+            map.putDouble("messagesSent", messagesSent);
+            map.putDouble("bytesSent", bytesSent);
+            map.putDouble("messagesReceived", messagesReceived);
+            map.putDouble("bytesReceived", bytesReceived);
+        }
+        map.putMap("sendEncodeTime", sendEncodeTime.toWritableMap());
+        map.putMap("receiveDecodeTime", receiveDecodeTime.toWritableMap());
+        map.putMap("receiveEmitDelay", receiveEmitDelay.toWritableMap());
+        return map;
+    }
+}
@@ -1,16 +1,120 @@
 package com.oney.WebRTCModule;
 
-import java.nio.charset.Charset;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicBoolean;
 
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
-import android.util.Base64;
 
 import com.facebook.react.bridge.Arguments;
 import com.facebook.react.bridge.WritableMap;
 
 import org.webrtc.DataChannel;
 
-class DataChannelObserver implements DataChannel.Observer {
+class DataChannelObserver
+    implements DataChannel.Observer, EventBatcher.EmitCallback {
+
+    /**
+     * The number of bytes at or below which the <tt>bufferedAmount</tt> of
+     * {@link #mDataChannel} is considered low. Set from JavaScript through
+     * <tt>RTCDataChannel.bufferedAmountLowThreshold</tt>.
+     */
+    private volatile long bufferedAmountLowThreshold;
+
+    /**
+     * Whether {@link #bufferedAmountReport} has been posted and has not run
+     * yet.
+     */
+    private final AtomicBoolean bufferedAmountReportScheduled
+        = new AtomicBoolean();
+
+    /**
+     * Reports the <tt>bufferedAmount</tt> of {@link #mDataChannel} to
+     * JavaScript after messages have been sent by JavaScript. Posted at most
+     * once per event batching window.
+     */
+    private final Runnable bufferedAmountReport = new Runnable() {
+        @Override
+        public void run() {
+            bufferedAmountReportScheduled.set(false);
+            sendBufferedAmountEvent(false);
+        }
+    };
+
+    /**
+     * The <tt>DataChannelChunker</tt> which sends the messages of
+     * {@link #mDataChannel} in chunks if framing is enabled; otherwise,
+     * <tt>null</tt>.
+     */
+    private volatile DataChannelChunker chunker;
+
+    /**
+     * The <tt>DataChannelChunker.Channel</tt> which queues the messages of
+     * {@link #mDataChannel} if framing is enabled; otherwise, <tt>null</tt>.
+     */
+    private volatile DataChannelChunker.Channel chunkerChannel;
+
+    /**
+     * The <tt>DataChannelReassembler</tt> which reassembles the chunked
+     * messages received by {@link #mDataChannel} if framing is enabled;
+     * otherwise, <tt>null</tt>. Used on the WebRTC signaling thread only.
+     */
+    private volatile DataChannelReassembler reassembler;
+
+    /**
+     * The <tt>DataChannelFileReceiver</tt> to which the binary messages
+     * received by {@link #mDataChannel} are written (instead of being
+     * delivered to JavaScript) if any.
+     */
+    private volatile DataChannelFileReceiver fileReceiver;
+
+    /**
+     * The <tt>DataChannelFileSender</tt> which is streaming a file over
+     * {@link #mDataChannel} if any.
+     */
+    private volatile DataChannelFileSender fileSender;
+
+    /**
+     * The decoder of the received text messages. Used on the WebRTC signaling
+     * thread only.
+     */
+    private final UTF8Decoder utf8Decoder = new UTF8Decoder();
+
+    private final DataChannelMetrics metrics = new DataChannelMetrics();
+
+    /**
+     * The times (in the time base of <tt>System.nanoTime()</tt>) at which the
+     * messages whose events have not been emitted yet were received (as a
+     * FIFO of {@link #pendingReceiptTimeCount} elements starting at
+     * {@link #pendingReceiptTimeHead}). Synchronized on
+     * {@link #pendingReceiptTimesLock}.
+     */
+    private long[] pendingReceiptTimes = new long[16];
+
+    private final Object pendingReceiptTimesLock = new Object();
+
+    private int pendingReceiptTimeCount;
+
+    private int pendingReceiptTimeHead;
+
+    /**
+     * The number of the messages sent by JavaScript which have been handed
+     * to {@link #mDataChannel} (or to {@link #chunker}). Written on the
+     * thread of the {@link WebRTCExecutor} only.
+     */
+    private volatile long sendCount;
+
+    /**
+     * The <tt>bufferedAmount</tt> (see {@link #getBufferedAmount()}) seen by
+     * the last {@link #onBufferedAmountChange(long)}. Used on the WebRTC
+     * signaling thread only.
+     */
+    private long lastBufferedAmount;
+
+    /**
+     * The time this instance was created in milliseconds (since boot).
+     */
+    private final long creationTime = SystemClock.elapsedRealtime();
 
     private final int mId;
     private final DataChannel mDataChannel;
@@ -39,8 +143,160 @@ class DataChannelObserver implements DataChannel.Observer {
         return null;
     }
 
+    /**
+     * Gets the <tt>bufferedAmount</tt> of {@link #mDataChannel} as reported
+     * to JavaScript: the bytes in the send buffer of the <tt>DataChannel</tt>
+     * plus, if framing is enabled, the bytes queued in the
+     * <tt>DataChannelChunker</tt>.
+     */
+    private long getBufferedAmount() {
+        DataChannelChunker.Channel chunkerChannel = this.chunkerChannel;
+
+        // Read the queued bytes before the bytes in the send buffer so that a
+        // chunk moving from the former to the latter is counted twice rather
+        // than not at all.
+        long queuedBytes
+            = chunkerChannel == null ? 0 : chunkerChannel.getQueuedBytes();
+
+        return queuedBytes + mDataChannel.bufferedAmount();
+    }
+
     @Override
-    public void onBufferedAmountChange(long amount) {
+    public void onBufferedAmountChange(long previousAmount) {
+        long nativeBufferedAmount = mDataChannel.bufferedAmount();
+        long bufferedAmount = getBufferedAmount();
+        long previousBufferedAmount = lastBufferedAmount;
+        long threshold = bufferedAmountLowThreshold;
+
+        lastBufferedAmount = bufferedAmount;
+
+        // https://www.w3.org/TR/webrtc/#event-datachannel-bufferedamountlow
+        // is fired when the bufferedAmount decreases from above the threshold
+        // to (or below) it. Any other change is of no interest to JavaScript
+        // (e.g. the sends of the chunker and the file sender) or is reported
+        // after the sends of JavaScript (see onJavaScriptSend).
+        if (previousBufferedAmount > threshold && bufferedAmount <= threshold) {
+            sendBufferedAmountEvent(true);
+        }
+
+        DataChannelChunker chunker = this.chunker;
+        if (chunker != null) {
+            chunker.onBufferedAmountChange(mId, nativeBufferedAmount);
+        }
+        DataChannelFileSender fileSender = this.fileSender;
+        if (fileSender != null) {
+            fileSender.onBufferedAmountChange(nativeBufferedAmount);
+        }
+    }
+
+    /**
+     * Notes that a message sent by JavaScript has been handed to
+     * {@link #mDataChannel} (or has failed to be) and schedules a report of
+     * the <tt>bufferedAmount</tt> to JavaScript unless one is scheduled
+     * already. Invoked on the thread of the {@link WebRTCExecutor}.
+     */
+    void onJavaScriptSend() {
+        ++sendCount;
+        if (bufferedAmountReportScheduled.compareAndSet(false, true)) {
+            webRTCModule.getBackgroundHandler().postDelayed(
+                bufferedAmountReport,
+                webRTCModule.getEventBatchingWindow());
+        }
+    }
+
+    /**
+     * Reports the <tt>bufferedAmount</tt> of {@link #mDataChannel} to
+     * JavaScript along with the number of the messages sent by JavaScript
+     * which it accounts for. JavaScript adds the messages it has sent since
+     * (i.e. which are still on their way to {@link #mDataChannel}).
+     *
+     * @param low whether the <tt>bufferedAmount</tt> has dropped to the
+     * low threshold
+     */
+    private void sendBufferedAmountEvent(boolean low) {
+        // Read sendCount before the bufferedAmount so that the latter
+        // accounts for (at least) the messages counted by the former.
+        long sendCount = this.sendCount;
+        long bufferedAmount = getBufferedAmount();
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", mId);
+        params.putInt("peerConnectionId", peerConnectionId);
+        // The amounts are bounded by the (16 MiB) send buffer of the
+        // DataChannel and the Java heap so they fit into a double without
+        // loss.
+        params.putDouble("bufferedAmount", bufferedAmount);
+        params.putBoolean("bufferedAmountLow", low);
+        params.putDouble("sendCount", sendCount);
+        webRTCModule.sendEvent("dataChannelBufferedAmountChanged", params);
+    }
+
+    /**
+     * Sets the <tt>DataChannelFileReceiver</tt> to which the binary messages
+     * received by {@link #mDataChannel} are to be written. Closes the
+     * previous one (if any).
+     *
+     * @param fileReceiver the <tt>DataChannelFileReceiver</tt> to write to or
+     * <tt>null</tt> to deliver binary messages to JavaScript again
+     */
+    void setFileReceiver(DataChannelFileReceiver fileReceiver) {
+        DataChannelFileReceiver oldFileReceiver;
+
+        synchronized (this) {
+            oldFileReceiver = this.fileReceiver;
+            this.fileReceiver = fileReceiver;
+        }
+        // Outside the lock of this instance which onMessage takes on the
+        // WebRTC signaling thread.
+        if (oldFileReceiver != null) {
+            oldFileReceiver.close();
+        }
+    }
+
+    /**
+     * Sets the <tt>DataChannelFileSender</tt> which streams a file over
+     * {@link #mDataChannel}. Cancels the previous one (if any).
+     *
+     * @param fileSender the <tt>DataChannelFileSender</tt> or <tt>null</tt>
+     */
+    void setFileSender(DataChannelFileSender fileSender) {
+        DataChannelFileSender oldFileSender;
+
+        synchronized (this) {
+            oldFileSender = this.fileSender;
+            this.fileSender = fileSender;
+        }
+        // Outside the lock of this instance which onMessage takes on the
+        // WebRTC signaling thread (cancel takes the lock of oldFileSender).
+        if (oldFileSender != null) {
+            oldFileSender.cancel();
+        }
+    }
+
+    /**
+     * Enables or disables framing (i.e. chunking and reassembly) of the
+     * messages of {@link #mDataChannel}.
+     *
+     * @param chunker the <tt>DataChannelChunker</tt> which is to send the
+     * messages of {@link #mDataChannel} or <tt>null</tt> to disable framing
+     * @param chunkerChannel the <tt>DataChannelChunker.Channel</tt> of
+     * {@link #mDataChannel} in <tt>chunker</tt> or <tt>null</tt> to disable
+     * framing
+     * @param reassembler the <tt>DataChannelReassembler</tt> which is to
+     * reassemble the messages of {@link #mDataChannel} or <tt>null</tt> to
+     * disable framing
+     */
+    void setFraming(
+            DataChannelChunker chunker,
+            DataChannelChunker.Channel chunkerChannel,
+            DataChannelReassembler reassembler) {
+        this.chunker = chunker;
+        this.chunkerChannel = chunkerChannel;
+        this.reassembler = reassembler;
+    }
+
+    void setBufferedAmountLowThreshold(long threshold) {
+        bufferedAmountLowThreshold = threshold;
     }
 
     @Override
@@ -52,28 +308,126 @@ class DataChannelObserver implements DataChannel.Observer {
         webRTCModule.sendEvent("dataChannelStateChanged", params);
     }
 
-    @Override
-    public void onMessage(DataChannel.Buffer buffer) {
+    /**
+     * Describes {@link #mDataChannel} to JavaScript for the purposes of a
+     * census of the native objects (see
+     * {@link WebRTCModule#getResourceCensus}). A <tt>DataChannel</tt> is
+     * flagged as leaked if it is closed but has not been released.
+     */
+    WritableMap describe() {
+        DataChannel.State state = mDataChannel.state();
         WritableMap params = Arguments.createMap();
-        params.putInt("id", mId);
+
         params.putInt("peerConnectionId", peerConnectionId);
+        params.putInt("id", mId);
+        params.putString("label", mDataChannel.label());
+        params.putString("state", dataChannelStateString(state));
+        params.putDouble("age", SystemClock.elapsedRealtime() - creationTime);
+        params.putBoolean("leaked", state == DataChannel.State.CLOSED);
+        return params;
+    }
 
-        byte[] bytes;
-        if (buffer.data.hasArray()) {
-            bytes = buffer.data.array();
-        } else {
-            bytes = new byte[buffer.data.remaining()];
-            buffer.data.get(bytes);
+    DataChannelMetrics getMetrics() {
+        return metrics;
+    }
+
+    @Override
+    public void onEmitted() {
+        long receiptTime;
+
+        synchronized (pendingReceiptTimesLock) {
+            if (pendingReceiptTimeCount == 0) {
+                return;
+            }
+            receiptTime = pendingReceiptTimes[pendingReceiptTimeHead];
+            pendingReceiptTimeHead
+                = (pendingReceiptTimeHead + 1) % pendingReceiptTimes.length;
+            --pendingReceiptTimeCount;
         }
+        metrics.receiveEmitDelay.record(
+            (System.nanoTime() - receiptTime) / 1000);
+    }
+
+    @Override
+    public void onMessage(DataChannel.Buffer buffer) {
+        long receiptTime = System.nanoTime();
 
+        metrics.onMessageReceived(buffer.data.remaining());
         if (buffer.binary) {
+            DataChannelFileReceiver fileReceiver = this.fileReceiver;
+            if (fileReceiver != null) {
+                if (fileReceiver.onMessage(buffer.data)) {
+                    synchronized (this) {
+                        if (this.fileReceiver == fileReceiver) {
+                            this.fileReceiver = null;
+                        }
+                    }
+                }
+                return;
+            }
+        }
+
+        DataChannelReassembler reassembler = this.reassembler;
+
+        // Text messages are never chunks (e.g. the remote peer has not
+        // enabled framing yet) so deliver them as they are.
+        if (reassembler != null && buffer.binary) {
+            ByteBuffer message = reassembler.onChunk(buffer.data);
+            if (message != null) {
+                sendMessageEvent(message, reassembler.isBinary(), receiptTime);
+            }
+        } else {
+            sendMessageEvent(buffer.data, buffer.binary, receiptTime);
+        }
+    }
+
+    /**
+     * Remembers the time at which a message was received until its event is
+     * emitted (see {@link #onEmitted()}).
+     */
+    private void pushPendingReceiptTime(long receiptTime) {
+        synchronized (pendingReceiptTimesLock) {
+            if (pendingReceiptTimeCount == pendingReceiptTimes.length) {
+                long[] newPendingReceiptTimes
+                    = new long[2 * pendingReceiptTimes.length];
+                for (int i = 0; i < pendingReceiptTimeCount; ++i) {
+                    newPendingReceiptTimes[i]
+                        = pendingReceiptTimes[
+                            (pendingReceiptTimeHead + i)
+                                % pendingReceiptTimes.length];
+                }
+                pendingReceiptTimes = newPendingReceiptTimes;
+                pendingReceiptTimeHead = 0;
+            }
+            pendingReceiptTimes[
+                    (pendingReceiptTimeHead + pendingReceiptTimeCount)
+                        % pendingReceiptTimes.length]
+                = receiptTime;
+            ++pendingReceiptTimeCount;
+        }
+    }
+
+    private void sendMessageEvent(
+            ByteBuffer data,
+            boolean binary,
+            long receiptTime) {
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", mId);
+        params.putInt("peerConnectionId", peerConnectionId);
+
+        if (binary) {
+            // Encode straight out of the (typically direct) ByteBuffer i.e.
+            // without copying it into an intermediate byte array first.
             params.putString("type", "binary");
-            params.putString("data", Base64.encodeToString(bytes, Base64.NO_WRAP));
+            params.putString("data", Base64Util.encode(data));
         } else {
             params.putString("type", "text");
-            params.putString("data", new String(bytes, Charset.forName("UTF-8")));
+            params.putString("data", utf8Decoder.decode(data));
         }
 
-        webRTCModule.sendEvent("dataChannelReceiveMessage", params);
+        metrics.receiveDecodeTime.record(
+            (System.nanoTime() - receiptTime) / 1000);
+        pushPendingReceiptTime(receiptTime);
+        webRTCModule.sendEvent("dataChannelReceiveMessage", params, this);
     }
 }
@@ -0,0 +1,123 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+
+import android.util.Log;
+
+/**
+ * Reassembles the messages received in chunks over a framed
+ * <tt>DataChannel</tt> (see {@link DataChannelChunker} for the format). At
+ * most one message is reassembled at a time and messages larger than a
+ * specific size are discarded as soon as their first chunk is received i.e.
+ * the memory used by the reassembly is bounded.
+ *
+ * Not thread-safe.
+ */
+class DataChannelReassembler {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The default maximum size of a reassembled message.
+     */
+    static final int DEFAULT_MAX_MESSAGE_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Whether the message being reassembled is binary.
+     */
+    private boolean binary;
+
+    /**
+     * Whether the chunks of the current message are being dropped (e.g.
+     * because the message is too large).
+     */
+    private boolean discarding;
+
+    /**
+     * The number of bytes of {@link #message} received so far.
+     */
+    private int length;
+
+    private final int maxMessageSize;
+
+    /**
+     * The message being reassembled.
+     */
+    private byte[] message;
+
+    DataChannelReassembler(int maxMessageSize) {
+        this.maxMessageSize = maxMessageSize;
+    }
+
+    /**
+     * Gets whether the message last returned by {@link #onChunk} is binary.
+     */
+    boolean isBinary() {
+        return binary;
+    }
+
+    /**
+     * Consumes a chunk of a message.
+     *
+     * @param chunk the chunk to consume
+     * @return the reassembled message if <tt>chunk</tt> is its last chunk;
+     * otherwise, <tt>null</tt>
+     */
+    ByteBuffer onChunk(ByteBuffer chunk) {
+        if (!chunk.hasRemaining()) {
+            return null;
+        }
+
+        int flags = chunk.get();
+
+        if ((flags & DataChannelChunker.FLAG_FIRST) != 0) {
+            if (message != null) {
+                Log.w(TAG, "Dropping an incomplete chunked message");
+                message = null;
+            }
+            if (chunk.remaining() < 4) {
+                discarding = (flags & DataChannelChunker.FLAG_LAST) == 0;
+                return null;
+            }
+
+            int size = chunk.getInt();
+            if (size < 0 || size > maxMessageSize) {
+                Log.w(TAG, "Dropping a chunked message of " + size
+                    + " bytes, the maximum is " + maxMessageSize);
+                discarding = (flags & DataChannelChunker.FLAG_LAST) == 0;
+                return null;
+            }
+            binary = (flags & DataChannelChunker.FLAG_TEXT) == 0;
+            discarding = false;
+            length = 0;
+            message = new byte[size];
+        } else if (discarding || message == null) {
+            if ((flags & DataChannelChunker.FLAG_LAST) != 0) {
+                discarding = false;
+            }
+            return null;
+        }
+
+        int remaining = chunk.remaining();
+        if (length + remaining > message.length) {
+            Log.w(TAG, "Dropping a chunked message which exceeds its length");
+            message = null;
+            discarding = (flags & DataChannelChunker.FLAG_LAST) == 0;
+            return null;
+        }
+        chunk.get(message, length, remaining);
+        length += remaining;
+
+        if ((flags & DataChannelChunker.FLAG_LAST) == 0) {
+            return null;
+        }
+
+        ByteBuffer r = null;
+        if (length == message.length) {
+            r = ByteBuffer.wrap(message);
+        } else {
+            Log.w(TAG, "Dropping a truncated chunked message");
+        }
+        message = null;
+        return r;
+    }
+}
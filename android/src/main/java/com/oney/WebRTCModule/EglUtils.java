@@ -0,0 +1,43 @@
+package com.oney.WebRTCModule;
+
+import android.util.Log;
+
+import org.webrtc.EglBase;
+
+/**
+ * Owns the root {@code EglBase} of the application, the {@code EGLContext} of
+ * which is shared by all video renderers (and, consequently, with which they
+ * share textures) instead of each of them creating an unrelated one. The
+ * hardware video encoders and decoders of the {@code PeerConnectionFactory}
+ * use it as well so that decoded frames can be rendered as textures.
+ */
+public class EglUtils {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The root {@code EglBase} instance shared by the entire application for
+     * the purposes of sharing a single {@code EGLContext}. Created the first
+     * time it is requested.
+     */
+    private static EglBase rootEglBase;
+
+    /**
+     * Gets the root {@code EglBase.Context} shared by the entire application.
+     *
+     * @return The root {@code EglBase.Context} or {@code null} if it could not
+     * be created.
+     */
+    public static synchronized EglBase.Context getRootEglBaseContext() {
+        if (rootEglBase == null) {
+            try {
+                rootEglBase = EglBase.create();
+            } catch (RuntimeException e) {
+                // EGL may be unavailable (e.g. on emulators without GPU
+                // support). The renderers will create unshared contexts then.
+                Log.e(TAG, "Failed to create the root EglBase", e);
+                return null;
+            }
+        }
+        return rootEglBase.getEglBaseContext();
+    }
+}
@@ -0,0 +1,298 @@
+package com.oney.WebRTCModule;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.support.annotation.Nullable;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.ReactContext;
+import com.facebook.react.bridge.ReadableArray;
+import com.facebook.react.bridge.ReadableMap;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+import com.facebook.react.modules.core.DeviceEventManagerModule;
+
+/**
+ * Coalesces the events sent by {@link WebRTCModule#sendEvent} into batches
+ * which cross the React Native bridge as a single event (named
+ * {@link #BATCH_EVENT_NAME}) carrying an array of <tt>{name, params}</tt>
+ * pairs. The JavaScript counterpart re-emits the pairs in order so the rest of
+ * the JavaScript code is oblivious to the batching.
+ *
+ * A batch is delivered when either the configured window has elapsed since
+ * its first event or the configured number of events has been reached.
+ * Latency-sensitive events (e.g. state changes) flush the batch they are
+ * appended to immediately. All events go through a single queue so the order
+ * in which they were sent (and, consequently, the per-peer-connection order)
+ * is preserved.
+ *
+ * Batching is disabled by default.
+ */
+class EventBatcher {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The interface of the parties interested in the moment at which an event
+     * they have sent is actually emitted to JavaScript (e.g. in order to
+     * measure the delay added by batching).
+     */
+    interface EmitCallback {
+        /**
+         * Notifies this {@code EmitCallback} that an event sent with it has
+         * been emitted to JavaScript. The events sent with one and the same
+         * {@code EmitCallback} are emitted in the order in which they were
+         * sent.
+         */
+        void onEmitted();
+    }
+
+    /**
+     * The name of the event which carries a batch of events.
+     */
+    static final String BATCH_EVENT_NAME = "webRTCEventBatch";
+
+    /**
+     * The names of the events which flush the batch they are appended to by
+     * default.
+     */
+    private static final String[] DEFAULT_LATENCY_SENSITIVE_EVENTS = {
+        "dataChannelStateChanged",
+        "peerConnectionIceConnectionChanged",
+        "peerConnectionIceGatheringChanged",
+        "peerConnectionOnRenegotiationNeeded",
+        "peerConnectionSignalingStateChanged"
+    };
+
+    private static final int DEFAULT_MAX_COUNT = 64;
+
+    private final ReactContext reactContext;
+
+    /**
+     * The {@code Object} which synchronizes the access to the state of this
+     * instance.
+     */
+    private final Object lock = new Object();
+
+    /**
+     * The {@code Handler} which schedules the delivery of a batch after the
+     * window has elapsed. Created along with {@link #handlerThread} the first
+     * time batching gets enabled.
+     */
+    private Handler handler;
+
+    private HandlerThread handlerThread;
+
+    private Set<String> latencySensitiveEvents
+        = new HashSet<String>(Arrays.asList(DEFAULT_LATENCY_SENSITIVE_EVENTS));
+
+    /**
+     * The maximum number of events in a batch.
+     */
+    private int maxCount = DEFAULT_MAX_COUNT;
+
+    /**
+     * The batch being gathered, if any.
+     */
+    private WritableArray pending;
+
+    /**
+     * The {@code EmitCallback}s of the events in {@link #pending} (if they
+     * have been sent with any).
+     */
+    private final List<EmitCallback> pendingCallbacks
+        = new ArrayList<EmitCallback>();
+
+    private int pendingCount;
+
+    /**
+     * The number of milliseconds for which events are gathered into a batch.
+     * Zero (the default) disables batching.
+     */
+    private long windowMs;
+
+    /**
+     * The {@code Runnable} which delivers {@link #pending} when the window has
+     * elapsed. Explicitly defined in order to allow its removal from
+     * {@link #handler} when a batch is delivered early.
+     */
+    private final Runnable flushRunnable = new Runnable() {
+        @Override
+        public void run() {
+            synchronized (lock) {
+                flush();
+            }
+        }
+    };
+
+    EventBatcher(ReactContext reactContext) {
+        this.reactContext = reactContext;
+    }
+
+    /**
+     * Configures this {@code EventBatcher}.
+     *
+     * @param options <tt>windowMs</tt> (zero or absent disables batching),
+     * <tt>maxCount</tt> and <tt>latencySensitiveEvents</tt> (the names of the
+     * events which flush a batch immediately).
+     */
+    void configure(@Nullable ReadableMap options) {
+        synchronized (lock) {
+            // Whatever has been gathered so far was gathered under the old
+            // configuration.
+            flush();
+
+            windowMs = 0;
+            maxCount = DEFAULT_MAX_COUNT;
+            latencySensitiveEvents
+                = new HashSet<String>(
+                        Arrays.asList(DEFAULT_LATENCY_SENSITIVE_EVENTS));
+            if (options != null) {
+                if (options.hasKey("windowMs")) {
+                    windowMs = Math.max(0, options.getInt("windowMs"));
+                }
+                if (options.hasKey("maxCount")) {
+                    maxCount = Math.max(1, options.getInt("maxCount"));
+                }
+                if (options.hasKey("latencySensitiveEvents")) {
+                    ReadableArray names
+                        = options.getArray("latencySensitiveEvents");
+
+                    latencySensitiveEvents = new HashSet<String>();
+                    for (int i = 0; i < names.size(); ++i) {
+                        latencySensitiveEvents.add(names.getString(i));
+                    }
+                }
+            }
+            if (windowMs > 0 && handler == null) {
+                handlerThread = new HandlerThread(TAG + ".EventBatcher");
+                handlerThread.start();
+                handler = new Handler(handlerThread.getLooper());
+            }
+            Log.d(TAG, "EventBatcher windowMs: " + windowMs
+                + ", maxCount: " + maxCount);
+        }
+    }
+
+    /**
+     * Releases the resources acquired by this instance. Any gathered events
+     * are dropped because there is no JavaScript to deliver them to anymore.
+     */
+    void dispose() {
+        synchronized (lock) {
+            pending = null;
+            pendingCallbacks.clear();
+            pendingCount = 0;
+            windowMs = 0;
+            if (handlerThread != null) {
+                handlerThread.quit();
+                handlerThread = null;
+                handler = null;
+            }
+        }
+    }
+
+    /**
+     * Gets the number of milliseconds for which events are gathered into a
+     * batch (zero if batching is disabled).
+     */
+    long getWindowMs() {
+        synchronized (lock) {
+            return windowMs;
+        }
+    }
+
+    private void emit(String eventName, @Nullable Object params) {
+        reactContext
+            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
+            .emit(eventName, params);
+    }
+
+    /**
+     * Delivers {@link #pending}, if any. Must be invoked with {@link #lock}
+     * held.
+     */
+    private void flush() {
+        if (pending != null) {
+            WritableArray batch = pending;
+
+            pending = null;
+            pendingCount = 0;
+            if (handler != null) {
+                handler.removeCallbacks(flushRunnable);
+            }
+            emit(BATCH_EVENT_NAME, batch);
+
+            if (!pendingCallbacks.isEmpty()) {
+                for (EmitCallback callback : pendingCallbacks) {
+                    callback.onEmitted();
+                }
+                pendingCallbacks.clear();
+            }
+        }
+    }
+
+    /**
+     * Sends a specific event to JavaScript either immediately (if batching is
+     * disabled) or as part of a batch.
+     *
+     * @param eventName the name of the event to send
+     * @param params the parameters of the event to send
+     */
+    void sendEvent(String eventName, @Nullable WritableMap params) {
+        sendEvent(eventName, params, null);
+    }
+
+    /**
+     * Sends a specific event to JavaScript either immediately (if batching is
+     * disabled) or as part of a batch and notifies a specific
+     * {@code EmitCallback} when the event has been emitted.
+     *
+     * @param eventName the name of the event to send
+     * @param params the parameters of the event to send
+     * @param callback the {@code EmitCallback} to notify or <tt>null</tt>
+     */
+    void sendEvent(
+            String eventName,
+            @Nullable WritableMap params,
+            @Nullable EmitCallback callback) {
+        synchronized (lock) {
+            if (windowMs <= 0) {
+                emit(eventName, params);
+                if (callback != null) {
+                    callback.onEmitted();
+                }
+                return;
+            }
+
+            WritableMap event = Arguments.createMap();
+            event.putString("name", eventName);
+            if (params == null) {
+                event.putNull("params");
+            } else {
+                event.putMap("params", params);
+            }
+
+            if (pending == null) {
+                pending = Arguments.createArray();
+                handler.postDelayed(flushRunnable, windowMs);
+            }
+            pending.pushMap(event);
+            ++pendingCount;
+            if (callback != null) {
+                pendingCallbacks.add(callback);
+            }
+
+            if (pendingCount >= maxCount
+                    || latencySensitiveEvents.contains(eventName)) {
+                flush();
+            }
+        }
+    }
+}
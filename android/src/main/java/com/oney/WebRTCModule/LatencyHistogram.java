@@ -0,0 +1,111 @@
+package com.oney.WebRTCModule;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * A histogram of durations (in microseconds) with a fixed memory footprint.
+ * The buckets are linear within each power of two (i.e. log-linear) so the
+ * reported percentiles are within 12.5% of the recorded values.
+ *
+ * Thread-safe.
+ */
+class LatencyHistogram {
+    /**
+     * The binary logarithm of the number of buckets per power of two.
+     */
+    private static final int SUB_BUCKET_BITS = 3;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    /**
+     * The largest recordable value; larger values are recorded as this one.
+     * About 19 hours.
+     */
+    private static final long MAX_VALUE = (1L << 36) - 1;
+
+    private final long[] counts
+        = new long[bucketIndex(MAX_VALUE) + 1];
+
+    private long count;
+
+    private long max;
+
+    private long sum;
+
+    /**
+     * Gets the index of the bucket in which a specific value is counted.
+     */
+    private static int bucketIndex(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return (shift + 1) * SUB_BUCKETS + (int) (value >> shift) - SUB_BUCKETS;
+    }
+
+    /**
+     * Gets the largest value counted in the bucket with a specific index.
+     */
+    private static long bucketUpperBound(int index) {
+        if (index < SUB_BUCKETS) {
+            return index;
+        }
+
+        int shift = index / SUB_BUCKETS - 1;
+        long mantissa = index % SUB_BUCKETS + SUB_BUCKETS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+
+    /**
+     * Gets the value at or below which a specific fraction of the recorded
+     * values are. Must be invoked with the lock of this instance held.
+     */
+    private long percentile(double fraction) {
+        long rank = (long) Math.ceil(fraction * count);
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; ++i) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return Math.min(bucketUpperBound(i), max);
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Records a specific duration.
+     *
+     * @param valueUs the duration to record in microseconds
+     */
+    synchronized void record(long valueUs) {
+        long value = Math.max(0, Math.min(valueUs, MAX_VALUE));
+
+        ++counts[bucketIndex(value)];
+        ++count;
+        sum += value;
+        if (value > max) {
+            max = value;
+        }
+    }
+
+    /**
+     * Describes the recorded durations (in microseconds) to JavaScript.
+     *
+     * @return a <tt>WritableMap</tt> with <tt>count</tt>, <tt>mean</tt>,
+     * <tt>p50</tt>, <tt>p95</tt>, <tt>p99</tt> and <tt>max</tt>
+     */
+    synchronized WritableMap toWritableMap() {
+        WritableMap map = Arguments.createMap();
+
+        map.putDouble("count", count);
+        map.putDouble("mean", count == 0 ? 0 : (double) sum / count);
+        map.putDouble("p50", percentile(0.5));
+        map.putDouble("p95", percentile(0.95));
+        map.putDouble("p99", percentile(0.99));
+        map.putDouble("max", max);
+        return map;
+    }
+}
@@ -0,0 +1,312 @@
+package com.oney.WebRTCModule;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import android.os.SystemClock;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.AudioTrack;
+import org.webrtc.MediaStream;
+import org.webrtc.MediaStreamTrack;
+import org.webrtc.VideoTrack;
+
+/**
+ * The registry of the <tt>MediaStream</tt>s (by reactTag) and the local
+ * <tt>MediaStreamTrack</tt>s (by id) known to JavaScript. Accessed on the
+ * thread of the {@link WebRTCExecutor} (React methods), the WebRTC signaling
+ * thread (remote streams being added and removed) and the UI thread (views
+ * looking streams up).
+ *
+ * Lookups by reactTag and by id are lock-free (the primary maps are
+ * <tt>ConcurrentHashMap</tt>s) and so is the lookup of the stream which owns
+ * a track. Mutations, which update the primary maps and the secondary
+ * indexes together, are synchronized on this instance and so is the lookup of
+ * the reactTag of a native <tt>MediaStream</tt>. None of the lookups scans.
+ *
+ * The cameras of the local video tracks are indexed by track id by the
+ * {@link VideoCapturerPool}.
+ */
+class MediaRegistry {
+    /**
+     * The reactTags of the <tt>MediaStream</tt>s in {@link #streams} by
+     * (native) <tt>MediaStream</tt> instance. Identity-based because the
+     * native WebRTC implementation reuses the <tt>MediaStream</tt> instance of
+     * the so-called default remote stream. Synchronized on this instance.
+     */
+    private final Map<MediaStream, String> streamReactTags
+        = new IdentityHashMap<MediaStream, String>();
+
+    /**
+     * The times of the registrations of the <tt>MediaStream</tt>s in
+     * {@link #streams} by reactTag. Synchronized on this instance.
+     */
+    private final Map<String, Registration> streamRegistrations
+        = new HashMap<String, Registration>();
+
+    /**
+     * The <tt>MediaStream</tt>s by reactTag.
+     */
+    private final Map<String, MediaStream> streams
+        = new ConcurrentHashMap<String, MediaStream>();
+
+    /**
+     * The reactTags of the <tt>MediaStream</tt>s in {@link #streams} which
+     * own the (local and remote) tracks by track id.
+     */
+    private final Map<String, String> trackStreamReactTags
+        = new ConcurrentHashMap<String, String>();
+
+    /**
+     * The local <tt>MediaStreamTrack</tt>s by id.
+     */
+    private final Map<String, MediaStreamTrack> tracks
+        = new ConcurrentHashMap<String, MediaStreamTrack>();
+
+    /**
+     * The times of the registrations of the <tt>MediaStreamTrack</tt>s in
+     * {@link #tracks} by id. Synchronized on this instance.
+     */
+    private final Map<String, Registration> trackRegistrations
+        = new HashMap<String, Registration>();
+
+    /**
+     * Registers a specific <tt>MediaStream</tt> with a specific reactTag and
+     * indexes its current tracks as owned by it.
+     *
+     * @param peerConnectionId the id of the <tt>PeerConnection</tt> which has
+     * received <tt>stream</tt> or <tt>-1</tt> if <tt>stream</tt> is local
+     */
+    synchronized void addStream(
+            String reactTag,
+            MediaStream stream,
+            int peerConnectionId) {
+        MediaStream oldStream = streams.put(reactTag, stream);
+        if (oldStream != null && oldStream != stream) {
+            unindexStream(reactTag, oldStream);
+        }
+        streamReactTags.put(stream, reactTag);
+        streamRegistrations.put(
+            reactTag,
+            new Registration(peerConnectionId));
+        for (AudioTrack track : stream.audioTracks) {
+            trackStreamReactTags.put(track.id(), reactTag);
+        }
+        for (VideoTrack track : stream.videoTracks) {
+            trackStreamReactTags.put(track.id(), reactTag);
+        }
+    }
+
+    /**
+     * Registers a specific local <tt>MediaStreamTrack</tt> with a specific
+     * id.
+     */
+    synchronized void addTrack(String id, MediaStreamTrack track) {
+        tracks.put(id, track);
+        trackRegistrations.put(id, new Registration(-1));
+    }
+
+    /**
+     * Describes the registered <tt>MediaStream</tt>s and
+     * <tt>MediaStreamTrack</tt>s to JavaScript for the purposes of a census of
+     * the native objects (see {@link WebRTCModule#getResourceCensus}). A
+     * remote stream is flagged as leaked if it has outlived the
+     * <tt>PeerConnection</tt> which has received it and a track is flagged as
+     * leaked if no registered stream owns it or the stream which owns it is
+     * leaked.
+     *
+     * @param livePeerConnectionIds the ids of the <tt>PeerConnection</tt>s
+     * which are not closed
+     * @param census the map to put the <tt>mediaStreams</tt> and
+     * <tt>mediaStreamTracks</tt> arrays into
+     */
+    synchronized void describe(
+            Set<Integer> livePeerConnectionIds,
+            WritableMap census) {
+        long now = SystemClock.elapsedRealtime();
+        Set<String> leakedStreams = new HashSet<String>();
+        WritableArray streamArray = Arguments.createArray();
+
+        for (Map.Entry<String, MediaStream> e : streams.entrySet()) {
+            String reactTag = e.getKey();
+            MediaStream stream = e.getValue();
+            Registration registration = streamRegistrations.get(reactTag);
+            boolean remote = registration.peerConnectionId != -1;
+            boolean leaked
+                = remote
+                    && !livePeerConnectionIds.contains(
+                            registration.peerConnectionId);
+
+            if (leaked) {
+                leakedStreams.add(reactTag);
+            }
+
+            WritableMap params = Arguments.createMap();
+            params.putString("reactTag", reactTag);
+            params.putBoolean("remote", remote);
+            if (remote) {
+                params.putInt("peerConnectionId", registration.peerConnectionId);
+            }
+            params.putInt("audioTracks", stream.audioTracks.size());
+            params.putInt("videoTracks", stream.videoTracks.size());
+            params.putDouble("age", now - registration.time);
+            params.putBoolean("leaked", leaked);
+            streamArray.pushMap(params);
+        }
+        census.putArray("mediaStreams", streamArray);
+
+        WritableArray trackArray = Arguments.createArray();
+        for (Map.Entry<String, MediaStreamTrack> e : tracks.entrySet()) {
+            String id = e.getKey();
+            String streamReactTag = trackStreamReactTags.get(id);
+
+            WritableMap params = Arguments.createMap();
+            params.putString("id", id);
+            params.putString("kind", e.getValue().kind());
+            params.putString("streamReactTag", streamReactTag);
+            params.putDouble("age", now - trackRegistrations.get(id).time);
+            params.putBoolean(
+                "leaked",
+                streamReactTag == null || leakedStreams.contains(streamReactTag));
+            trackArray.pushMap(params);
+        }
+        census.putArray("mediaStreamTracks", trackArray);
+    }
+
+    boolean containsStream(String reactTag) {
+        return streams.containsKey(reactTag);
+    }
+
+    boolean containsTrack(String id) {
+        return tracks.containsKey(id);
+    }
+
+    MediaStream getStream(String reactTag) {
+        return streams.get(reactTag);
+    }
+
+    /**
+     * Gets the reactTag with which a specific <tt>MediaStream</tt> instance
+     * is registered.
+     *
+     * @return the reactTag of <tt>stream</tt> or <tt>null</tt> if it is not
+     * registered
+     */
+    synchronized String getStreamReactTag(MediaStream stream) {
+        return streamReactTags.get(stream);
+    }
+
+    MediaStreamTrack getTrack(String id) {
+        return tracks.get(id);
+    }
+
+    /**
+     * Gets the reactTag of the registered <tt>MediaStream</tt> which owns the
+     * track with a specific id.
+     *
+     * @return the reactTag of the owning stream or <tt>null</tt> if no
+     * registered stream owns the track
+     */
+    String getTrackStreamReactTag(String trackId) {
+        return trackStreamReactTags.get(trackId);
+    }
+
+    /**
+     * Unregisters a specific <tt>MediaStream</tt> instance.
+     *
+     * @return the reactTag with which <tt>stream</tt> was registered or
+     * <tt>null</tt> if it was not registered
+     */
+    synchronized String removeStream(MediaStream stream) {
+        String reactTag = streamReactTags.get(stream);
+        if (reactTag != null) {
+            streams.remove(reactTag);
+            unindexStream(reactTag, stream);
+        }
+        return reactTag;
+    }
+
+    /**
+     * Unregisters the <tt>MediaStream</tt> with a specific reactTag.
+     *
+     * @return the unregistered <tt>MediaStream</tt> or <tt>null</tt> if no
+     * stream was registered with <tt>reactTag</tt>
+     */
+    synchronized MediaStream removeStream(String reactTag) {
+        MediaStream stream = streams.remove(reactTag);
+        if (stream != null) {
+            unindexStream(reactTag, stream);
+        }
+        return stream;
+    }
+
+    /**
+     * Unregisters the local <tt>MediaStreamTrack</tt> with a specific id.
+     *
+     * @return the unregistered <tt>MediaStreamTrack</tt> or <tt>null</tt> if
+     * no track was registered with <tt>id</tt>
+     */
+    synchronized MediaStreamTrack removeTrack(String id) {
+        trackRegistrations.remove(id);
+        return tracks.remove(id);
+    }
+
+    /**
+     * Notes that the track with a specific id is no longer owned by the
+     * <tt>MediaStream</tt> with a specific reactTag (e.g. because it has been
+     * removed from the stream).
+     */
+    synchronized void removeTrackFromStream(String reactTag, String trackId) {
+        if (reactTag.equals(trackStreamReactTags.get(trackId))) {
+            trackStreamReactTags.remove(trackId);
+        }
+    }
+
+    /**
+     * Removes the secondary indexes of a specific <tt>MediaStream</tt> which
+     * was registered with a specific reactTag. Must be invoked with the lock
+     * of this instance held.
+     */
+    private void unindexStream(String reactTag, MediaStream stream) {
+        if (streams.get(reactTag) != stream) {
+            streamRegistrations.remove(reactTag);
+        }
+        if (reactTag.equals(streamReactTags.get(stream))) {
+            streamReactTags.remove(stream);
+        }
+        for (AudioTrack track : stream.audioTracks) {
+            removeTrackFromStream(reactTag, track.id());
+        }
+        for (VideoTrack track : stream.videoTracks) {
+            removeTrackFromStream(reactTag, track.id());
+        }
+    }
+
+    /**
+     * The registration of a <tt>MediaStream</tt> or a
+     * <tt>MediaStreamTrack</tt>.
+     */
+    private static class Registration {
+        /**
+         * The id of the <tt>PeerConnection</tt> which has received the
+         * registered object or <tt>-1</tt> if it is local.
+         */
+        final int peerConnectionId;
+
+        /**
+         * The time of the registration in milliseconds (since boot).
+         */
+        final long time = SystemClock.elapsedRealtime();
+
+        Registration(int peerConnectionId) {
+            this.peerConnectionId = peerConnectionId;
+        }
+    }
+}
@@ -1,11 +1,21 @@
 package com.oney.WebRTCModule;
 
-import java.io.UnsupportedEncodingException;
+import java.io.File;
+import java.io.IOException;
 import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import android.os.SystemClock;
 import android.support.annotation.Nullable;
-import android.util.Base64;
 import android.util.Log;
 import android.util.SparseArray;
 
@@ -30,10 +40,84 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
     private final SparseArray<DataChannel> dataChannels
         = new SparseArray<DataChannel>();
+
+    /**
+     * The <tt>DataChannelObserver</tt>s registered with the
+     * <tt>DataChannel</tt>s in {@link #dataChannels} (by the same ids).
+     * Synchronized on itself because remotely-opened <tt>DataChannel</tt>s are
+     * added on the WebRTC signaling thread (see
+     * {@link #getDataChannelObserver(int)}).
+     */
+    private final SparseArray<DataChannelObserver> dataChannelObservers
+        = new SparseArray<DataChannelObserver>();
+
+    /**
+     * The <tt>DataChannelChunker</tt> which sends the messages of the
+     * <tt>DataChannel</tt>s with framing enabled. Created the first time
+     * framing is enabled.
+     */
+    private DataChannelChunker dataChannelChunker;
+
+    /**
+     * The encoder of the text messages sent over {@link #dataChannels},
+     * reused across messages. Replaces malformed input (i.e. unpaired
+     * surrogates) the way <tt>String.getBytes</tt> does.
+     */
+    private final CharsetEncoder utf8Encoder
+        = Charset.forName("UTF-8").newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * The default minimum number of milliseconds between two
+     * <tt>dataChannelFileProgress</tt> events of a file transfer.
+     */
+    private static final int DEFAULT_FILE_PROGRESS_INTERVAL = 250;
+
+    /**
+     * The allocator of the ids of the remotely-opened <tt>DataChannel</tt>s.
+     */
+    private final RemoteDataChannelIdAllocator remoteDataChannelIds
+        = new RemoteDataChannelIdAllocator();
+
+    /**
+     * The time this instance was created in milliseconds (since boot).
+     */
+    private final long creationTime = SystemClock.elapsedRealtime();
+
     private final int id;
     private PeerConnection peerConnection;
     private final WebRTCModule webRTCModule;
 
+    /**
+     * The maximum number of milliseconds for which a local ICE candidate may
+     * be held back in order to be sent to JavaScript in a batch together with
+     * the other candidates of the same <tt>sdpMid</tt>. Zero (the default)
+     * disables batching. Synchronized on {@link #pendingIceCandidates}.
+     */
+    private int iceCandidateBatchingDelay;
+
+    /**
+     * The local ICE candidates which have not been sent to JavaScript yet
+     * grouped by <tt>sdpMid</tt> (in order of appearance).
+     */
+    private final Map<String, WritableArray> pendingIceCandidates
+        = new LinkedHashMap<String, WritableArray>();
+
+    /**
+     * The {@code Runnable} representation of
+     * {@link #flushPendingIceCandidates()}. Explicitly defined in order to
+     * allow its removal from the background {@code Handler} of
+     * {@link #webRTCModule} when the batches are sent early.
+     */
+    private final Runnable flushPendingIceCandidatesRunnable
+        = new Runnable() {
+            @Override
+            public void run() {
+                flushPendingIceCandidates();
+            }
+        };
+
     /**
      * The <tt>StringBuilder</tt> cache utilized by {@link #convertWebRTCStats}
      * in order to minimize the number of allocations of <tt>StringBuilder</tt>
@@ -43,6 +127,27 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     private SoftReference<StringBuilder> convertWebRTCStatsStringBuilder
         = new SoftReference(null);
 
+    /**
+     * The {@code StatsSampler} which feeds the stats subscription of
+     * JavaScript, if any. Accessed on the thread of the
+     * {@code WebRTCExecutor} only.
+     */
+    private StatsSampler statsSubscription;
+
+    /**
+     * The {@code CallQualityAggregator} which feeds the quality subscription
+     * of JavaScript, if any. Accessed on the thread of the
+     * {@code WebRTCExecutor} only.
+     */
+    private CallQualityAggregator qualitySubscription;
+
+    /**
+     * The {@code StatsRecorder} which records the statistics of
+     * {@link #peerConnection} for post-call diagnostics, if any. Accessed on
+     * the thread of the {@code WebRTCExecutor} only.
+     */
+    private StatsRecorder statsRecorder;
+
     PeerConnectionObserver(WebRTCModule webRTCModule, int id) {
         this.webRTCModule = webRTCModule;
         this.id = id;
@@ -56,12 +161,106 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         this.peerConnection = peerConnection;
     }
 
+    /**
+     * Describes {@link #peerConnection} and its <tt>DataChannel</tt>s to
+     * JavaScript for the purposes of a census of the native objects (see
+     * {@link WebRTCModule#getResourceCensus}). A <tt>PeerConnection</tt> is
+     * flagged as leaked if it has been closed natively but has not been
+     * released.
+     *
+     * @param peerConnectionArray the array to push the description of
+     * {@link #peerConnection} into
+     * @param dataChannelArray the array to push the descriptions of the
+     * <tt>DataChannel</tt>s into
+     */
+    void describe(
+            WritableArray peerConnectionArray,
+            WritableArray dataChannelArray) {
+        PeerConnection.SignalingState signalingState
+            = peerConnection.signalingState();
+        List<DataChannelObserver> observers = getDataChannelObservers();
+        int dataChannelCount = observers.size();
+
+        for (DataChannelObserver observer : observers) {
+            dataChannelArray.pushMap(observer.describe());
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", id);
+        params.putString("signalingState", signalingStateString(signalingState));
+        params.putString(
+            "iceConnectionState",
+            iceConnectionStateString(peerConnection.iceConnectionState()));
+        params.putInt("dataChannels", dataChannelCount);
+        params.putDouble("age", SystemClock.elapsedRealtime() - creationTime);
+        params.putBoolean(
+            "leaked",
+            signalingState == PeerConnection.SignalingState.CLOSED);
+        peerConnectionArray.pushMap(params);
+    }
+
     void close() {
+         synchronized (pendingIceCandidates) {
+             iceCandidateBatchingDelay = 0;
+             pendingIceCandidates.clear();
+             webRTCModule.getBackgroundHandler()
+                 .removeCallbacks(flushPendingIceCandidatesRunnable);
+         }
+
+         unsubscribeStats();
+         unsubscribeQuality();
+         stopStatsRecording();
+
          peerConnection.close();
 
          // Unlike on iOS, we cannot unregister the DataChannel.Observer
          // instance on Android. At least do whatever else we do on iOS.
+         if (dataChannelChunker != null) {
+             dataChannelChunker.clear();
+         }
+         for (DataChannelObserver observer : getDataChannelObservers()) {
+             observer.setFileSender(null);
+             observer.setFileReceiver(null);
+         }
          dataChannels.clear();
+         synchronized (dataChannelObservers) {
+             dataChannelObservers.clear();
+         }
+    }
+
+    /**
+     * Converts specific <tt>StatsReport</tt>s into their typed JSON
+     * representation (see {@link TypedStatsEncoder}).
+     *
+     * @param reports the <tt>StatsReport</tt>s to convert
+     * @param types the types of the <tt>StatsReport</tt>s to convert or
+     * <tt>null</tt> to convert all of them
+     */
+    private String convertWebRTCStats(
+            StatsReport[] reports,
+            Set<String> types) {
+        StringBuilder s
+            = TypedStatsEncoder.encode(
+                    reports,
+                    types,
+                    getConvertWebRTCStatsStringBuilder());
+        String r = s.toString();
+        s.setLength(0);
+        return r;
+    }
+
+    /**
+     * Gets the <tt>StringBuilder</tt> reused across the conversions of
+     * <tt>StatsReport</tt>s into JSON (if possible, i.e. unless it has been
+     * garbage collected, in order to reduce the total number of allocations).
+     */
+    private StringBuilder getConvertWebRTCStatsStringBuilder() {
+        StringBuilder s = convertWebRTCStatsStringBuilder.get();
+        if (s == null) {
+            s = new StringBuilder();
+            convertWebRTCStatsStringBuilder = new SoftReference(s);
+        }
+        return s;
     }
 
     private String convertWebRTCStats(StatsReport[] reports) {
@@ -73,11 +272,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         // If possible, reuse a single StringBuilder instance across multiple
         // getStats method calls in order to reduce the total number of
         // allocations.
-        StringBuilder s = convertWebRTCStatsStringBuilder.get();
-        if (s == null) {
-            s = new StringBuilder();
-            convertWebRTCStatsStringBuilder = new SoftReference(s);
-        }
+        StringBuilder s = getConvertWebRTCStatsStringBuilder();
 
         s.append('[');
         final int reportCount = reports.length;
@@ -151,41 +346,353 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         if (dataChannel != null) {
             dataChannel.close();
             dataChannels.remove(dataChannelId);
+            DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+            if (observer != null) {
+                observer.setFileSender(null);
+                observer.setFileReceiver(null);
+                synchronized (dataChannelObservers) {
+                    dataChannelObservers.remove(dataChannelId);
+                }
+            }
+            if (dataChannelChunker != null) {
+                dataChannelChunker.removeChannel(dataChannelId);
+            }
+            remoteDataChannelIds.release(dataChannelId);
         } else {
             Log.d(TAG, "dataChannelClose() dataChannel is null");
         }
     }
 
     void dataChannelSend(int dataChannelId, String data, String type) {
+        DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+        try {
+            dataChannelSend(dataChannelId, observer, data, type);
+        } finally {
+            // Whether it has succeeded or not, the message is no longer on
+            // its way to the DataChannel as far as bufferedAmount in
+            // JavaScript is concerned.
+            if (observer != null) {
+                observer.onJavaScriptSend();
+            }
+        }
+    }
+
+    private void dataChannelSend(
+            int dataChannelId,
+            DataChannelObserver observer,
+            String data,
+            String type) {
         DataChannel dataChannel = dataChannels.get(dataChannelId);
         if (dataChannel != null) {
-            byte[] byteArray;
+            long startTime = System.nanoTime();
+            ByteBuffer byteBuffer;
+            boolean binary;
             if (type.equals("text")) {
+                byteBuffer = encodeUTF8(data);
+                binary = false;
+            } else if (type.equals("binary")) {
                 try {
-                    byteArray = data.getBytes("UTF-8");
-                } catch (UnsupportedEncodingException e) {
-                    Log.d(TAG, "Could not encode text string as UTF-8.");
+                    byteBuffer
+                        = ByteBufferPool.acquire(
+                                Base64Util.decodedLength(data));
+                    byteBuffer.limit(
+                        Base64Util.decode(
+                            data,
+                            byteBuffer.array(),
+                            byteBuffer.arrayOffset()));
+                } catch (IllegalArgumentException e) {
+                    Log.e(TAG, "Could not decode binary data: " + e.getMessage());
                     return;
                 }
-            } else if (type.equals("binary")) {
-                byteArray = Base64.decode(data, Base64.NO_WRAP);
+                binary = true;
             } else {
                 Log.e(TAG, "Unsupported data type: " + type);
                 return;
             }
-            ByteBuffer byteBuffer = ByteBuffer.wrap(byteArray);
-            DataChannel.Buffer buffer = new DataChannel.Buffer(byteBuffer, type.equals("binary"));
-            dataChannel.send(buffer);
+
+            int length = byteBuffer.remaining();
+            if (observer != null) {
+                observer.getMetrics().sendEncodeTime.record(
+                    (System.nanoTime() - startTime) / 1000);
+            }
+
+            try {
+                if (dataChannelChunker != null
+                        && dataChannelChunker.send(
+                                dataChannelId, byteBuffer, binary)) {
+                    if (observer != null) {
+                        observer.getMetrics().onMessageSent(length);
+                    }
+                    return;
+                }
+
+                DataChannel.Buffer buffer = new DataChannel.Buffer(byteBuffer, binary);
+                if (dataChannel.send(buffer)) {
+                    if (observer != null) {
+                        observer.getMetrics().onMessageSent(length);
+                    }
+                } else {
+                    // The send buffer of the DataChannel is full (and the
+                    // DataChannel is being closed). The sender should have
+                    // respected bufferedAmount.
+                    Log.e(TAG, "dataChannelSend() failed, bufferedAmount: "
+                        + dataChannel.bufferedAmount());
+                }
+            } finally {
+                // DataChannel.send and DataChannelChunker.send have copied
+                // the bytes by now.
+                ByteBufferPool.release(byteBuffer);
+            }
         } else {
             Log.d(TAG, "dataChannelSend() dataChannel is null");
         }
     }
 
+    /**
+     * Encodes a specific <tt>String</tt> in UTF-8 into a <tt>ByteBuffer</tt>
+     * acquired from {@link ByteBufferPool}.
+     *
+     * @param s the <tt>String</tt> to encode
+     * @return the flipped <tt>ByteBuffer</tt> which contains the UTF-8 bytes
+     * of <tt>s</tt> and which is to be released to <tt>ByteBufferPool</tt>
+     */
+    private ByteBuffer encodeUTF8(String s) {
+        // A UTF-16 code unit is encoded in at most 3 bytes (a surrogate pair
+        // i.e. 2 code units in 4 bytes).
+        ByteBuffer byteBuffer = ByteBufferPool.acquire(3 * s.length());
+
+        synchronized (utf8Encoder) {
+            utf8Encoder.reset();
+            utf8Encoder.encode(CharBuffer.wrap(s), byteBuffer, true);
+            utf8Encoder.flush(byteBuffer);
+        }
+        byteBuffer.flip();
+        return byteBuffer;
+    }
+
+    /**
+     * Sets the threshold at or below which the <tt>bufferedAmount</tt> of a
+     * specific <tt>DataChannel</tt> is considered low.
+     */
+    void dataChannelSetBufferedAmountLowThreshold(
+            int dataChannelId,
+            long threshold) {
+        DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+        if (observer != null) {
+            observer.setBufferedAmountLowThreshold(threshold);
+        } else {
+            Log.d(TAG,
+                "dataChannelSetBufferedAmountLowThreshold() dataChannel is null");
+        }
+    }
+
+    /**
+     * Enables or disables the framing (i.e. chunking and reassembly) of the
+     * messages of a specific <tt>DataChannel</tt>. Both peers have to enable
+     * it.
+     *
+     * @param dataChannelId the id of the <tt>DataChannel</tt>
+     * @param options <tt>chunkSize</tt> (the size of the sent messages
+     * including the chunk header) and <tt>maxMessageSize</tt> (in bytes, both
+     * optional) or <tt>null</tt> to disable framing
+     */
+    void dataChannelSetFraming(int dataChannelId, ReadableMap options) {
+        DataChannel dataChannel = dataChannels.get(dataChannelId);
+        DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+        if (dataChannel == null || observer == null) {
+            Log.d(TAG, "dataChannelSetFraming() dataChannel is null");
+            return;
+        }
+
+        if (options == null) {
+            if (dataChannelChunker != null) {
+                dataChannelChunker.removeChannel(dataChannelId);
+            }
+            observer.setFraming(null, null, null);
+            return;
+        }
+
+        int chunkSize = DataChannelChunker.DEFAULT_CHUNK_SIZE;
+        if (options.hasKey("chunkSize")) {
+            chunkSize = options.getInt("chunkSize");
+            if (chunkSize <= DataChannelChunker.HEADER_SIZE) {
+                Log.w(TAG,
+                    "dataChannelSetFraming() chunkSize " + chunkSize
+                        + " does not exceed the size of a chunk header");
+                chunkSize = DataChannelChunker.HEADER_SIZE + 1;
+            }
+        }
+        int maxMessageSize = DataChannelReassembler.DEFAULT_MAX_MESSAGE_SIZE;
+        if (options.hasKey("maxMessageSize")) {
+            maxMessageSize = Math.max(0, options.getInt("maxMessageSize"));
+        }
+
+        if (dataChannelChunker == null) {
+            dataChannelChunker
+                = new DataChannelChunker(webRTCModule.getBackgroundHandler());
+        }
+        DataChannelChunker.Channel chunkerChannel
+            = dataChannelChunker.addChannel(
+                    dataChannelId,
+                    dataChannel,
+                    chunkSize);
+        observer.setFraming(
+            dataChannelChunker,
+            chunkerChannel,
+            new DataChannelReassembler(maxMessageSize));
+    }
+
+    /**
+     * Writes the binary messages received over a specific
+     * <tt>DataChannel</tt> to a file instead of delivering them to
+     * JavaScript.
+     *
+     * @param dataChannelId the id of the <tt>DataChannel</tt>
+     * @param path the path of the file to write or <tt>null</tt> to stop
+     * writing and deliver binary messages to JavaScript again
+     * @param options <tt>size</tt> (the number of bytes after which writing
+     * stops) and <tt>progressInterval</tt> (the minimum number of
+     * milliseconds between progress events), both optional
+     */
+    void dataChannelReceiveToFile(
+            int dataChannelId,
+            String path,
+            ReadableMap options) {
+        DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+        if (observer == null) {
+            Log.d(TAG, "dataChannelReceiveToFile() dataChannel is null");
+            return;
+        }
+        if (path == null) {
+            observer.setFileReceiver(null);
+            return;
+        }
+
+        long size = -1;
+        if (options != null && options.hasKey("size")) {
+            size = (long) options.getDouble("size");
+        }
+        try {
+            observer.setFileReceiver(
+                new DataChannelFileReceiver(
+                        webRTCModule,
+                        id,
+                        dataChannelId,
+                        path,
+                        size,
+                        getProgressInterval(options)));
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to open " + path + ": " + e.getMessage());
+            WritableMap params = Arguments.createMap();
+            params.putInt("id", dataChannelId);
+            params.putInt("peerConnectionId", id);
+            params.putString("direction", "receive");
+            params.putString("path", path);
+            params.putDouble("bytes", 0);
+            params.putDouble("total", size);
+            params.putBoolean("done", false);
+            params.putString("error", e.getMessage());
+            webRTCModule.sendEvent("dataChannelFileProgress", params);
+        }
+    }
+
+    /**
+     * Streams a file over a specific <tt>DataChannel</tt> as a sequence of
+     * binary messages. Cancels the file transfer in progress over the
+     * <tt>DataChannel</tt> (if any).
+     *
+     * @param dataChannelId the id of the <tt>DataChannel</tt>
+     * @param path the path of the file to send
+     * @param options <tt>chunkSize</tt> (the size of the messages in bytes)
+     * and <tt>progressInterval</tt> (the minimum number of milliseconds
+     * between progress events), both optional
+     */
+    void dataChannelSendFile(
+            int dataChannelId,
+            String path,
+            ReadableMap options) {
+        DataChannel dataChannel = dataChannels.get(dataChannelId);
+        DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+        if (dataChannel == null || observer == null) {
+            Log.d(TAG, "dataChannelSendFile() dataChannel is null");
+            return;
+        }
+
+        int chunkSize = DataChannelChunker.DEFAULT_CHUNK_SIZE;
+        if (options != null && options.hasKey("chunkSize")) {
+            chunkSize = Math.max(1, options.getInt("chunkSize"));
+        }
+        DataChannelFileSender fileSender
+            = new DataChannelFileSender(
+                    webRTCModule,
+                    id,
+                    dataChannelId,
+                    dataChannel,
+                    path,
+                    chunkSize,
+                    getProgressInterval(options));
+        observer.setFileSender(fileSender);
+        fileSender.start();
+    }
+
+    private static int getProgressInterval(ReadableMap options) {
+        if (options != null && options.hasKey("progressInterval")) {
+            return Math.max(0, options.getInt("progressInterval"));
+        }
+        return DEFAULT_FILE_PROGRESS_INTERVAL;
+    }
+
+    /**
+     * Gets the metrics of a specific <tt>DataChannel</tt> (see
+     * {@link DataChannelMetrics}).
+     *
+     * @param dataChannelId the id of the <tt>DataChannel</tt>
+     * @return the metrics or <tt>null</tt> if there is no such
+     * <tt>DataChannel</tt>
+     */
+    WritableMap dataChannelGetMetrics(int dataChannelId) {
+        DataChannelObserver observer = getDataChannelObserver(dataChannelId);
+        return observer == null ? null : observer.getMetrics().toWritableMap();
+    }
+
+    /**
+     * Gets the statistics of the <tt>PeerConnection</tt> (optionally, of a
+     * specific <tt>MediaStreamTrack</tt> only) as typed values. For more
+     * details, refer to {@link TypedStatsEncoder}.
+     *
+     * @param trackId the id of the <tt>MediaStreamTrack</tt> or an empty
+     * <tt>String</tt> for all statistics
+     * @param types the types of the reports to get or <tt>null</tt> for all
+     * @param cb the <tt>Callback</tt> to invoke with the JSON representation
+     * of the statistics
+     */
+    void getTypedStats(
+            String trackId,
+            final Set<String> types,
+            final Callback cb) {
+        MediaStreamTrack track = null;
+        if (trackId == null
+                || trackId.isEmpty()
+                || (track = webRTCModule.mMediaRegistry.getTrack(trackId))
+                    != null) {
+            peerConnection.getStats(
+                    new StatsObserver() {
+                        @Override
+                        public void onComplete(StatsReport[] reports) {
+                            cb.invoke(convertWebRTCStats(reports, types));
+                        }
+                    },
+                    track);
+        } else {
+            Log.e(TAG, "peerConnectionGetTypedStats() MediaStreamTrack not found for id: " + trackId);
+        }
+    }
+
     void getStats(String trackId, final Callback cb) {
         MediaStreamTrack track = null;
         if (trackId == null
                 || trackId.isEmpty()
-                || (track = webRTCModule.mMediaStreamTracks.get(trackId))
+                || (track = webRTCModule.mMediaRegistry.getTrack(trackId))
                     != null) {
             peerConnection.getStats(
                     new StatsObserver() {
@@ -200,15 +707,220 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         }
     }
 
+    /**
+     * Sends the local ICE candidates which have been held back, if any, to
+     * JavaScript as one <tt>peerConnectionGotICECandidates</tt> event per
+     * <tt>sdpMid</tt>.
+     */
+    private void flushPendingIceCandidates() {
+        synchronized (pendingIceCandidates) {
+            if (pendingIceCandidates.isEmpty()) {
+                return;
+            }
+            webRTCModule.getBackgroundHandler()
+                .removeCallbacks(flushPendingIceCandidatesRunnable);
+            for (Map.Entry<String, WritableArray> e
+                    : pendingIceCandidates.entrySet()) {
+                WritableMap params = Arguments.createMap();
+                params.putInt("id", id);
+                params.putString("sdpMid", e.getKey());
+                params.putArray("candidates", e.getValue());
+
+                webRTCModule.sendEvent("peerConnectionGotICECandidates", params);
+            }
+            pendingIceCandidates.clear();
+        }
+    }
+
+    void setIceCandidateBatching(int delayMs) {
+        synchronized (pendingIceCandidates) {
+            iceCandidateBatchingDelay = Math.max(0, delayMs);
+            if (iceCandidateBatchingDelay == 0) {
+                flushPendingIceCandidates();
+            }
+        }
+    }
+
+    /**
+     * Starts sampling the statistics of {@link #peerConnection} at a specific
+     * interval and sending the values which have changed since the previous
+     * sample to JavaScript as <tt>peerConnectionStatsDelta</tt> events. For
+     * the format of the deltas, refer to {@link StatsDeltaEncoder}. Replaces
+     * the previous subscription, if any.
+     *
+     * @param intervalMs the number of milliseconds between two samples
+     */
+    void subscribeStats(int intervalMs) {
+        unsubscribeStats();
+
+        final StatsDeltaEncoder encoder = new StatsDeltaEncoder();
+        statsSubscription
+            = new StatsSampler(
+                    peerConnection,
+                    webRTCModule.getBackgroundHandler(),
+                    intervalMs,
+                    new StatsSampler.Listener() {
+                        @Override
+                        public void onStatsSampled(StatsReport[] reports) {
+                            String delta = encoder.encode(reports);
+                            if (delta != null) {
+                                WritableMap params = Arguments.createMap();
+                                params.putInt("id", id);
+                                params.putString("delta", delta);
+                                webRTCModule.sendEvent(
+                                    "peerConnectionStatsDelta",
+                                    params);
+                            }
+                        }
+                    });
+        statsSubscription.start();
+    }
+
+    void unsubscribeStats() {
+        if (statsSubscription != null) {
+            statsSubscription.stop();
+            statsSubscription = null;
+        }
+    }
+
+    /**
+     * Starts sampling the statistics of {@link #peerConnection} at a specific
+     * interval and sending call-quality summaries computed over a rolling
+     * window to JavaScript as <tt>peerConnectionQualitySummary</tt> events.
+     * For the format of the summaries, refer to
+     * {@link CallQualityAggregator}. Replaces the previous subscription, if
+     * any.
+     *
+     * @param intervalMs the number of milliseconds between two samples
+     * @param windowMs the number of milliseconds over which the bitrate and
+     * the packet loss are computed
+     */
+    void subscribeQuality(int intervalMs, int windowMs) {
+        unsubscribeQuality();
+
+        qualitySubscription
+            = new CallQualityAggregator(
+                    webRTCModule,
+                    id,
+                    peerConnection,
+                    webRTCModule.getBackgroundHandler(),
+                    intervalMs,
+                    windowMs);
+        qualitySubscription.start();
+    }
+
+    void unsubscribeQuality() {
+        if (qualitySubscription != null) {
+            qualitySubscription.stop();
+            qualitySubscription = null;
+        }
+    }
+
+    /**
+     * Starts recording the statistics of {@link #peerConnection} at a
+     * specific interval into a ring buffer of a specific capacity. Replaces
+     * the previous recording, if any.
+     *
+     * @param intervalMs the number of milliseconds between two samples
+     * @param maxBytes the cap of the memory used by the recording in bytes
+     */
+    void startStatsRecording(int intervalMs, int maxBytes) {
+        stopStatsRecording();
+
+        statsRecorder
+            = new StatsRecorder(
+                    peerConnection,
+                    webRTCModule.getBackgroundHandler(),
+                    intervalMs,
+                    maxBytes);
+        statsRecorder.start();
+    }
+
+    void stopStatsRecording() {
+        if (statsRecorder != null) {
+            statsRecorder.stop();
+            statsRecorder = null;
+        }
+    }
+
+    /**
+     * Exports the statistics recorded by {@link #statsRecorder} to a specific
+     * file (on the background thread). For the format of the file, refer to
+     * {@link StatsRecorder#export}. The recording continues.
+     *
+     * @param file the file to export to
+     * @param cb the {@code Callback} to invoke with <tt>true</tt> and the
+     * number of exported samples or with <tt>false</tt> and an error message,
+     * or <tt>null</tt>
+     * @return <tt>true</tt> if the statistics are being recorded and are to be
+     * exported; otherwise, <tt>false</tt>
+     */
+    boolean exportStats(final File file, @Nullable final Callback cb) {
+        final StatsRecorder recorder = statsRecorder;
+        if (recorder == null) {
+            return false;
+        }
+
+        // The StatsRecorder is accessed on the background thread only.
+        webRTCModule.getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                int sampleCount;
+                try {
+                    sampleCount = recorder.export(file);
+                } catch (IOException e) {
+                    Log.e(TAG, "exportStats() failed: " + file, e);
+                    if (cb != null) {
+                        cb.invoke(false, e.getMessage());
+                    }
+                    return;
+                }
+
+                Log.d(TAG, "exportStats() exported " + sampleCount
+                    + " samples to " + file);
+                WritableMap params = Arguments.createMap();
+                params.putInt("id", id);
+                params.putString("path", file.getAbsolutePath());
+                params.putInt("samples", sampleCount);
+                webRTCModule.sendEvent("peerConnectionStatsExported", params);
+                if (cb != null) {
+                    cb.invoke(true, sampleCount);
+                }
+            }
+        });
+        return true;
+    }
+
     @Override
     public void onIceCandidate(final IceCandidate candidate) {
         Log.d(TAG, "onIceCandidate");
-        WritableMap params = Arguments.createMap();
-        params.putInt("id", id);
         WritableMap candidateParams = Arguments.createMap();
         candidateParams.putInt("sdpMLineIndex", candidate.sdpMLineIndex);
         candidateParams.putString("sdpMid", candidate.sdpMid);
         candidateParams.putString("candidate", candidate.sdp);
+
+        synchronized (pendingIceCandidates) {
+            if (iceCandidateBatchingDelay > 0) {
+                WritableArray candidates
+                    = pendingIceCandidates.get(candidate.sdpMid);
+                if (candidates == null) {
+                    candidates = Arguments.createArray();
+                    pendingIceCandidates.put(candidate.sdpMid, candidates);
+                }
+                candidates.pushMap(candidateParams);
+                // The latency budget starts with the first candidate held
+                // back (in any sdpMid).
+                if (pendingIceCandidates.size() == 1 && candidates.size() == 1) {
+                    webRTCModule.getBackgroundHandler().postDelayed(
+                        flushPendingIceCandidatesRunnable,
+                        iceCandidateBatchingDelay);
+                }
+                return;
+            }
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putInt("id", id);
         params.putMap("candidate", candidateParams);
 
         webRTCModule.sendEvent("peerConnectionGotICECandidate", params);
@@ -235,6 +947,10 @@ class PeerConnectionObserver implements PeerConnection.Observer {
     @Override
     public void onIceGatheringChange(PeerConnection.IceGatheringState iceGatheringState) {
         Log.d(TAG, "onIceGatheringChange" + iceGatheringState.name());
+        // The candidates which have been held back must reach JavaScript
+        // before the change of the gathering state (e.g. to complete which
+        // signals the end of the candidates).
+        flushPendingIceCandidates();
         WritableMap params = Arguments.createMap();
         params.putInt("id", id);
         params.putString("iceGatheringState", iceGatheringStateString(iceGatheringState));
@@ -243,7 +959,7 @@ class PeerConnectionObserver implements PeerConnection.Observer {
 
     @Override
     public void onAddStream(MediaStream mediaStream) {
-        String streamReactTag = webRTCModule.onAddStream(mediaStream);
+        String streamReactTag = webRTCModule.onAddStream(mediaStream, id);
 
         WritableMap params = Arguments.createMap();
         params.putInt("id", id);
@@ -301,20 +1017,8 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         // workaround, generated an id which will surely not clash with
         // the ids of the remotely-opened (and standard-compliant
         // locally-opened) DataChannels.
-        int dataChannelId = -1;
-        // The RTCDataChannel.id space is limited to unsigned short by
-        // the standard:
-        // https://www.w3.org/TR/webrtc/#dom-datachannel-id.
-        // Additionally, 65535 is reserved due to SCTP INIT and
-        // INIT-ACK chunks only allowing a maximum of 65535 streams to
-        // be negotiated (as defined by the WebRTC Data Channel
-        // Establishment Protocol).
-        for (int i = 65536; i <= Integer.MAX_VALUE; ++i) {
-            if (null == dataChannels.get(i, null)) {
-                dataChannelId = i;
-                break;
-            }
-        }
+        // See RemoteDataChannelIdAllocator.FIRST_ID.
+        int dataChannelId = remoteDataChannelIds.allocate();
         if (-1 == dataChannelId) {
           return;
         }
@@ -332,12 +1036,39 @@ class PeerConnectionObserver implements PeerConnection.Observer {
         webRTCModule.sendEvent("peerConnectionDidOpenDataChannel", params);
     }
 
+    private DataChannelObserver getDataChannelObserver(int dataChannelId) {
+        synchronized (dataChannelObservers) {
+            return dataChannelObservers.get(dataChannelId);
+        }
+    }
+
+    /**
+     * Gets a snapshot of {@link #dataChannelObservers} which may be iterated
+     * without the lock of the latter.
+     */
+    private List<DataChannelObserver> getDataChannelObservers() {
+        synchronized (dataChannelObservers) {
+            int size = dataChannelObservers.size();
+            List<DataChannelObserver> observers
+                = new ArrayList<DataChannelObserver>(size);
+
+            for (int i = 0; i < size; ++i) {
+                observers.add(dataChannelObservers.valueAt(i));
+            }
+            return observers;
+        }
+    }
+
     private void registerDataChannelObserver(int dcId, DataChannel dataChannel) {
         // DataChannel.registerObserver implementation does not allow to
         // unregister, so the observer is registered here and is never
         // unregistered
-        dataChannel.registerObserver(
-            new DataChannelObserver(webRTCModule, id, dcId, dataChannel));
+        DataChannelObserver observer
+            = new DataChannelObserver(webRTCModule, id, dcId, dataChannel);
+        synchronized (dataChannelObservers) {
+            dataChannelObservers.put(dcId, observer);
+        }
+        dataChannel.registerObserver(observer);
     }
 
     @Override
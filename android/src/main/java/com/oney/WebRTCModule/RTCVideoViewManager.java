@@ -68,7 +68,7 @@ public class RTCVideoViewManager extends SimpleViewManager<WebRTCView> {
       mediaStream = null;
     } else {
       WebRTCModule module = mContext.getNativeModule(WebRTCModule.class);
-      mediaStream = module.mMediaStreams.get(streamURL);
+      mediaStream = module.mMediaRegistry.getStream(streamURL);
     }
     view.setStream(mediaStream);
   }
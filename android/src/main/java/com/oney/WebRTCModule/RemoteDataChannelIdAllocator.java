@@ -0,0 +1,71 @@
+package com.oney.WebRTCModule;
+
+import java.util.Arrays;
+
+/**
+ * Allocates the ids of the remotely-opened <tt>DataChannel</tt>s of a
+ * <tt>PeerConnection</tt> in constant time: ids of closed
+ * <tt>DataChannel</tt>s are reused first, otherwise the next never-allocated
+ * id is used.
+ *
+ * Thread-safe.
+ */
+class RemoteDataChannelIdAllocator {
+    /**
+     * The first id of the (non-standard) id space of the remotely-opened
+     * <tt>DataChannel</tt>s. The <tt>RTCDataChannel.id</tt> space is limited
+     * to unsigned short by the standard:
+     * https://www.w3.org/TR/webrtc/#dom-datachannel-id. Additionally, 65535 is
+     * reserved due to SCTP INIT and INIT-ACK chunks only allowing a maximum
+     * of 65535 streams to be negotiated (as defined by the WebRTC Data
+     * Channel Establishment Protocol).
+     */
+    static final int FIRST_ID = 65536;
+
+    /**
+     * The ids which have been released and are available for reuse (as a
+     * stack of {@link #freeIdCount} elements).
+     */
+    private int[] freeIds = new int[8];
+
+    private int freeIdCount;
+
+    /**
+     * The smallest id which has never been allocated.
+     */
+    private int nextId = FIRST_ID;
+
+    /**
+     * Allocates an id for a remotely-opened <tt>DataChannel</tt>.
+     *
+     * @return the allocated id or <tt>-1</tt> if the id space is exhausted
+     */
+    synchronized int allocate() {
+        if (freeIdCount > 0) {
+            return freeIds[--freeIdCount];
+        }
+        if (nextId < FIRST_ID) {
+            // Integer overflow i.e. all ids up to Integer.MAX_VALUE are in
+            // use.
+            return -1;
+        }
+        return nextId++;
+    }
+
+    /**
+     * Makes the id of a remotely-opened <tt>DataChannel</tt> available for
+     * reuse. Ids of locally-opened <tt>DataChannel</tt>s are allocated in
+     * JavaScript and are ignored.
+     *
+     * @param id the id to release
+     */
+    synchronized void release(int id) {
+        if (id < FIRST_ID) {
+            return;
+        }
+        if (freeIdCount == freeIds.length) {
+            freeIds = Arrays.copyOf(freeIds, 2 * freeIds.length);
+        }
+        freeIds[freeIdCount++] = id;
+    }
+}
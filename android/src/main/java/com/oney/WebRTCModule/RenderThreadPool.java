@@ -0,0 +1,158 @@
+package com.oney.WebRTCModule;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * A pool of render threads shared by all {@link SurfaceViewRenderer}s.
+ * Instead of dedicating a thread to each renderer, a renderer is assigned to
+ * the pooled thread with the fewest renderers at the time of its
+ * initialization and the renderers assigned to one and the same thread
+ * multiplex it (by making their {@code EGLContext}s current in turn).
+ *
+ * A thread is started when the first renderer is assigned to it and is quit
+ * when the last renderer assigned to it is released.
+ */
+class RenderThreadPool {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The default maximum number of render threads.
+     */
+    private static final int DEFAULT_MAX_THREAD_COUNT = 2;
+
+    /**
+     * The maximum number of render threads.
+     */
+    private static int maxThreadCount = DEFAULT_MAX_THREAD_COUNT;
+
+    /**
+     * The renderers which have acquired render threads from this pool mapped
+     * to the render threads they have acquired.
+     */
+    private static final Map<SurfaceViewRenderer, RenderThread> renderers
+        = new IdentityHashMap<SurfaceViewRenderer, RenderThread>();
+
+    /**
+     * The times (in milliseconds since boot) at which the renderers in
+     * {@link #renderers} have acquired their render threads.
+     */
+    private static final Map<SurfaceViewRenderer, Long> acquisitionTimes
+        = new IdentityHashMap<SurfaceViewRenderer, Long>();
+
+    /**
+     * The render threads of this pool which have renderers assigned to them.
+     */
+    private static final List<RenderThread> threads
+        = new ArrayList<RenderThread>();
+
+    /**
+     * Acquires a render thread for a specific {@code SurfaceViewRenderer}.
+     *
+     * @param renderer The {@code SurfaceViewRenderer} which is to render on
+     * the acquired thread.
+     * @return The started {@code HandlerThread} on which {@code renderer} is to
+     * render.
+     */
+    static synchronized HandlerThread acquire(SurfaceViewRenderer renderer) {
+        RenderThread thread = renderers.get(renderer);
+
+        if (thread == null) {
+            // Pick the least busy thread unless there is still room for a new
+            // one.
+            if (threads.size() < maxThreadCount) {
+                thread = new RenderThread(threads.size());
+                thread.start();
+                threads.add(thread);
+                Log.d(TAG, "Started render thread " + thread.getName());
+            } else {
+                for (RenderThread t : threads) {
+                    if (thread == null || t.rendererCount < thread.rendererCount) {
+                        thread = t;
+                    }
+                }
+            }
+            ++thread.rendererCount;
+            renderers.put(renderer, thread);
+            acquisitionTimes.put(renderer, SystemClock.elapsedRealtime());
+        }
+        return thread;
+    }
+
+    /**
+     * Gets the time at which a specific {@code SurfaceViewRenderer} acquired
+     * its render thread.
+     *
+     * @return The time in milliseconds since boot or {@code -1} if
+     * {@code renderer} does not render on a thread of this pool.
+     */
+    static synchronized long getAcquisitionTime(SurfaceViewRenderer renderer) {
+        Long time = acquisitionTimes.get(renderer);
+        return time == null ? -1 : time;
+    }
+
+    /**
+     * Gets the {@code SurfaceViewRenderer}s which currently render on the
+     * threads of this pool.
+     *
+     * @return A snapshot of the {@code SurfaceViewRenderer}s which currently
+     * render on the threads of this pool.
+     */
+    static synchronized List<SurfaceViewRenderer> getRenderers() {
+        return Collections.unmodifiableList(
+                new ArrayList<SurfaceViewRenderer>(renderers.keySet()));
+    }
+
+    /**
+     * Releases the render thread acquired by a specific
+     * {@code SurfaceViewRenderer}. The caller is responsible for making sure
+     * that {@code renderer} has finished its work on the thread.
+     *
+     * @param renderer The {@code SurfaceViewRenderer} which is to release its
+     * render thread.
+     */
+    static synchronized void release(SurfaceViewRenderer renderer) {
+        RenderThread thread = renderers.remove(renderer);
+        acquisitionTimes.remove(renderer);
+
+        if (thread != null && --thread.rendererCount == 0) {
+            threads.remove(thread);
+            thread.quit();
+            Log.d(TAG, "Quit render thread " + thread.getName());
+        }
+    }
+
+    /**
+     * Sets the maximum number of render threads. Takes effect for the
+     * renderers initialized afterwards.
+     *
+     * @param maxThreadCount The maximum number of render threads.
+     */
+    static synchronized void setMaxThreadCount(int maxThreadCount) {
+        RenderThreadPool.maxThreadCount
+            = Math.max(1, maxThreadCount);
+    }
+
+    /**
+     * A {@code HandlerThread} of a {@code RenderThreadPool} which keeps track
+     * of the number of renderers assigned to it.
+     */
+    private static class RenderThread extends HandlerThread {
+        /**
+         * The number of renderers assigned to this thread. Synchronized on
+         * {@code RenderThreadPool.class}.
+         */
+        int rendererCount;
+
+        RenderThread(int index) {
+            super("SurfaceViewRenderer-" + index);
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package com.oney.WebRTCModule;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Encodes consecutive samples of <tt>StatsReport</tt>s as JSON deltas i.e.
+ * only the values which have changed since the previous sample (keyed by
+ * report id and value name), the names of the values which have disappeared
+ * from the reports which have not and the ids of the reports which have
+ * disappeared.
+ *
+ * The format of a delta is:
+ * <pre>
+ * {
+ *   "reports": {
+ *     "&lt;report id&gt;": {
+ *       "type": "&lt;report type&gt;",
+ *       "timestamp": &lt;report timestamp&gt;,
+ *       "values": { "&lt;value name&gt;": "&lt;value&gt;", ... }
+ *     },
+ *     ...
+ *   },
+ *   "removedValues": { "&lt;report id&gt;": [ "&lt;value name&gt;", ... ], ... },
+ *   "removed": [ "&lt;report id&gt;", ... ]
+ * }
+ * </pre>
+ * A report is included in <tt>reports</tt> only if it is new or at least one
+ * of its values has changed. The first delta contains all reports and all
+ * values.
+ *
+ * Not thread-safe.
+ */
+class StatsDeltaEncoder {
+    /**
+     * The values of the previous sample keyed by report id and value name.
+     */
+    private final Map<String, Map<String, String>> snapshot
+        = new HashMap<String, Map<String, String>>();
+
+    /**
+     * The ids of the reports seen in the sample being encoded. Compared
+     * against {@link #snapshot} in order to detect removed reports.
+     */
+    private final Set<String> seen = new HashSet<String>();
+
+    /**
+     * The names of the values seen in the report being encoded. Compared
+     * against {@link #snapshot} in order to detect removed values.
+     */
+    private final Set<String> seenNames = new HashSet<String>();
+
+    /**
+     * The <tt>StringBuilder</tt> of the <tt>removedValues</tt> of the delta
+     * being encoded, reused across {@link #encode} calls.
+     */
+    private final StringBuilder removedValues = new StringBuilder();
+
+    /**
+     * The <tt>StringBuilder</tt> reused across {@link #encode} calls in order
+     * to minimize the number of allocations of its <tt>char</tt> buffer.
+     */
+    private final StringBuilder s = new StringBuilder();
+
+    /**
+     * Appends a specific <tt>String</tt> to a specific <tt>StringBuilder</tt>
+     * as a JSON string literal.
+     */
+    static void appendJSONString(StringBuilder s, String str) {
+        s.append('"');
+        if (str != null) {
+            final int length = str.length();
+            for (int i = 0; i < length; ++i) {
+                char c = str.charAt(i);
+                switch (c) {
+                case '"':
+                    s.append("\\\"");
+                    break;
+                case '\\':
+                    s.append("\\\\");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        s.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        s.append(c);
+                    }
+                    break;
+                }
+            }
+        }
+        s.append('"');
+    }
+
+    /**
+     * Encodes the difference between a specific sample and the previous one
+     * (if any) and remembers the specified sample as the previous one.
+     *
+     * @param reports the sample to encode
+     * @return the JSON representation of the delta or <tt>null</tt> if
+     * nothing has changed
+     */
+    String encode(StatsReport[] reports) {
+        boolean changed = false;
+        boolean firstReport = true;
+        boolean firstRemovedValues = true;
+
+        s.append("{\"reports\":{");
+        for (StatsReport report : reports) {
+            seen.add(report.id);
+
+            Map<String, String> values = snapshot.get(report.id);
+            // A new report is included even if it has no values.
+            boolean firstValue = true;
+            boolean newReport = values == null;
+            if (newReport) {
+                values = new HashMap<String, String>();
+                snapshot.put(report.id, values);
+            }
+
+            for (StatsReport.Value v : report.values) {
+                seenNames.add(v.name);
+
+                String oldValue = values.put(v.name, v.value);
+                if (oldValue != null && oldValue.equals(v.value)) {
+                    continue;
+                }
+                if (firstValue) {
+                    firstValue = false;
+                    firstReport = appendReportHeader(report, firstReport);
+                } else {
+                    s.append(',');
+                }
+                appendJSONString(s, v.name);
+                s.append(':');
+                appendJSONString(s, v.value);
+            }
+            if (firstValue && newReport) {
+                firstValue = false;
+                firstReport = appendReportHeader(report, firstReport);
+            }
+            if (!firstValue) {
+                s.append("}}");
+                changed = true;
+            }
+
+            if (values.size() > seenNames.size()) {
+                boolean firstName = true;
+                for (Iterator<String> i = values.keySet().iterator();
+                        i.hasNext();) {
+                    String name = i.next();
+                    if (seenNames.contains(name)) {
+                        continue;
+                    }
+                    i.remove();
+                    if (firstName) {
+                        firstName = false;
+                        if (firstRemovedValues) {
+                            firstRemovedValues = false;
+                        } else {
+                            removedValues.append(',');
+                        }
+                        appendJSONString(removedValues, report.id);
+                        removedValues.append(":[");
+                    } else {
+                        removedValues.append(',');
+                    }
+                    appendJSONString(removedValues, name);
+                }
+                if (!firstName) {
+                    removedValues.append(']');
+                    changed = true;
+                }
+            }
+            seenNames.clear();
+        }
+        s.append("},\"removedValues\":{").append(removedValues).append('}');
+        removedValues.setLength(0);
+        s.append(",\"removed\":[");
+
+        boolean firstRemoved = true;
+        for (Iterator<String> i = snapshot.keySet().iterator(); i.hasNext();) {
+            String id = i.next();
+            if (!seen.contains(id)) {
+                i.remove();
+                if (firstRemoved) {
+                    firstRemoved = false;
+                } else {
+                    s.append(',');
+                }
+                appendJSONString(s, id);
+                changed = true;
+            }
+        }
+        s.append("]}");
+        seen.clear();
+
+        String r = changed ? s.toString() : null;
+        // Prepare the StringBuilder instance for reuse.
+        s.setLength(0);
+        return r;
+    }
+
+    /**
+     * Appends the beginning of the delta of a specific report (up to and
+     * including the opening brace of its values) to {@link #s}.
+     *
+     * @param firstReport whether the report is the first one of the delta
+     * @return <tt>false</tt> i.e. the new value of <tt>firstReport</tt>
+     */
+    private boolean appendReportHeader(StatsReport report, boolean firstReport) {
+        if (!firstReport) {
+            s.append(',');
+        }
+        appendJSONString(s, report.id);
+        s.append(":{\"type\":");
+        appendJSONString(s, report.type);
+        s.append(",\"timestamp\":").append(report.timestamp)
+            .append(",\"values\":{");
+        return false;
+    }
+}
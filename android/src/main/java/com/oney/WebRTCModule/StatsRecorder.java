@@ -0,0 +1,603 @@
+package com.oney.WebRTCModule;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import android.os.Handler;
+import android.util.Log;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.StatsReport;
+
+/**
+ * Records the statistics of a <tt>PeerConnection</tt> into a bounded, in-memory
+ * ring buffer so that calls can be diagnosed after they have ended without
+ * polling the statistics into JavaScript.
+ *
+ * Every (report id, value name) pair is a column. The samples are stored in
+ * blocks of {@link #SAMPLES_PER_BLOCK} samples. Within a block, a sample
+ * stores only the columns whose values have changed since the previous sample
+ * of the block (the first sample of a block stores all of them):
+ * <ul>
+ * <li>integers as the zigzag varint of the difference from the previous
+ * value;</li>
+ * <li>decimals as their scale and the zigzag varint of their unscaled
+ * value;</li>
+ * <li>any other value as the varint index of the value in a table of
+ * strings.</li>
+ * </ul>
+ * When the memory used exceeds the cap, the oldest block is evicted. The
+ * columns and the strings are never evicted because the blocks which remain
+ * refer to them. Instead, once they use half of the cap, values which would
+ * need new ones are no longer recorded.
+ *
+ * Not thread-safe: accessed on the <tt>Handler</tt> passed to the constructor
+ * only.
+ */
+class StatsRecorder implements StatsSampler.Listener {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The default cap of the memory used by a <tt>StatsRecorder</tt> in bytes.
+     */
+    static final int DEFAULT_MAX_BYTES = 1024 * 1024;
+
+    /**
+     * The minimum cap of the memory used by a <tt>StatsRecorder</tt> in bytes.
+     */
+    static final int MIN_MAX_BYTES = 16 * 1024;
+
+    private static final int KIND_INTEGER = 0;
+
+    private static final int KIND_DECIMAL = 1;
+
+    private static final int KIND_STRING = 2;
+
+    private static final int KIND_REMOVED = 3;
+
+    /**
+     * The maximum number of fraction digits of a decimal value which is
+     * stored as such (rather than as a string).
+     */
+    private static final int MAX_DECIMAL_SCALE = 9;
+
+    /**
+     * The number of samples in a block, the first of which stores the values
+     * of all columns.
+     */
+    private static final int SAMPLES_PER_BLOCK = 30;
+
+    /**
+     * The name of the column of a report which holds its type.
+     */
+    private static final String TYPE_COLUMN = "type";
+
+    /**
+     * The blocks of encoded samples, oldest first. The last one is the block
+     * into which samples are being encoded.
+     */
+    private final ArrayDeque<Block> blocks = new ArrayDeque<Block>();
+
+    /**
+     * The indexes of the columns by report id and value name.
+     */
+    private final Map<String, Map<String, Integer>> columnIndexes
+        = new HashMap<String, Map<String, Integer>>();
+
+    /**
+     * The value names of the columns by column index.
+     */
+    private final List<String> columnNames = new ArrayList<String>();
+
+    /**
+     * The report ids of the columns by column index.
+     */
+    private final List<String> columnReportIds = new ArrayList<String>();
+
+    /**
+     * The estimated number of bytes used by the columns and the strings.
+     */
+    private int dictionaryBytes;
+
+    /**
+     * Whether the columns and the strings have reached
+     * {@link #maxDictionaryBytes} (and that has been logged).
+     */
+    private boolean dictionaryFull;
+
+    /**
+     * The number of bytes which the columns and the strings may use, half of
+     * {@link #maxBytes}.
+     */
+    private final int maxDictionaryBytes;
+
+    /**
+     * The values of the columns in the last encoded sample of the current
+     * block by column index; <tt>null</tt> if absent.
+     */
+    private String[] lastValues = new String[64];
+
+    /**
+     * The integer values of the columns in the last encoded sample of the
+     * current block by column index.
+     */
+    private long[] lastIntegers = new long[64];
+
+    private final int maxBytes;
+
+    private final StatsSampler sampler;
+
+    /**
+     * The indexes of the strings in {@link #strings}.
+     */
+    private final Map<String, Integer> stringIndexes
+        = new HashMap<String, Integer>();
+
+    private final List<String> strings = new ArrayList<String>();
+
+    /**
+     * The values of the columns in the sample being encoded by column index;
+     * <tt>null</tt> if absent.
+     */
+    private String[] values = new String[64];
+
+    StatsRecorder(
+            PeerConnection peerConnection,
+            Handler handler,
+            int intervalMs,
+            int maxBytes) {
+        this.maxBytes = Math.max(MIN_MAX_BYTES, maxBytes);
+        maxDictionaryBytes = this.maxBytes / 2;
+
+        sampler = new StatsSampler(peerConnection, handler, intervalMs, this);
+    }
+
+    private static void appendDecimal(
+            StringBuilder s,
+            long unscaled,
+            int scale) {
+        String digits = Long.toString(Math.abs(unscaled));
+
+        if (unscaled < 0) {
+            s.append('-');
+        }
+        // Pad with leading zeros so that there is an integer digit.
+        for (int i = digits.length(); i <= scale; ++i) {
+            s.append('0');
+        }
+        int point = s.length() + digits.length() - scale;
+        s.append(digits);
+        if (scale > 0) {
+            s.insert(point, '.');
+        }
+    }
+
+    /**
+     * Parses a JSON number literal without an exponent and with at most
+     * {@link #MAX_DECIMAL_SCALE} fraction digits into its unscaled value.
+     *
+     * @return the unscaled value or <tt>null</tt> if the value is not such a
+     * literal or does not round-trip through its unscaled value and scale
+     */
+    private static long[] parseDecimal(String value) {
+        if (!TypedStatsEncoder.isJSONNumber(value)
+                || value.indexOf('e') != -1
+                || value.indexOf('E') != -1) {
+            return null;
+        }
+
+        int point = value.indexOf('.');
+        int scale = point == -1 ? 0 : value.length() - point - 1;
+        if (scale > MAX_DECIMAL_SCALE) {
+            return null;
+        }
+        String digits
+            = point == -1
+                ? value
+                : value.substring(0, point) + value.substring(point + 1);
+        long unscaled;
+        try {
+            unscaled = Long.parseLong(digits);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+        // -0 and -0.0 do not round-trip and neither does the absolute value
+        // of Long.MIN_VALUE.
+        if ((unscaled == 0 && value.charAt(0) == '-')
+                || unscaled == Long.MIN_VALUE) {
+            return null;
+        }
+        return new long[] { unscaled, scale };
+    }
+
+    private static long readVarLong(byte[] bytes, int[] position) {
+        long value = 0;
+        int shift = 0;
+        byte b;
+
+        do {
+            b = bytes[position[0]++];
+            value |= (long) (b & 0x7f) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    private static long readZigZag(byte[] bytes, int[] position) {
+        long value = readVarLong(bytes, position);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * Exports the recorded samples to a specific file as JSON lines, one per
+     * sample, oldest first:
+     * <pre>
+     * {"timestamp":&lt;ms&gt;,"reports":{"&lt;report id&gt;":{"type":...,"&lt;value name&gt;":&lt;value&gt;,...},...}}
+     * </pre>
+     * The values are typed as by {@link TypedStatsEncoder}.
+     *
+     * @param file the file to export to
+     * @return the number of exported samples
+     */
+    int export(File file) throws IOException {
+        // The reports and their columns in the order in which they were first
+        // seen.
+        Map<String, List<Integer>> reportColumns
+            = new LinkedHashMap<String, List<Integer>>();
+        for (int i = 0, size = columnReportIds.size(); i < size; ++i) {
+            String reportId = columnReportIds.get(i);
+            List<Integer> columns = reportColumns.get(reportId);
+            if (columns == null) {
+                columns = new ArrayList<Integer>();
+                reportColumns.put(reportId, columns);
+            }
+            columns.add(i);
+        }
+
+        int columnCount = columnNames.size();
+        String[] decodedValues = new String[columnCount];
+        long[] decodedIntegers = new long[columnCount];
+        StringBuilder s = new StringBuilder();
+        int sampleCount = 0;
+        Writer writer
+            = new BufferedWriter(
+                    new OutputStreamWriter(
+                            new FileOutputStream(file),
+                            "UTF-8"));
+
+        try {
+            for (Block block : blocks) {
+                Arrays.fill(decodedValues, null);
+                Arrays.fill(decodedIntegers, 0);
+
+                int[] position = { 0 };
+                long timestamp = 0;
+                while (position[0] < block.length) {
+                    timestamp += readZigZag(block.bytes, position);
+                    for (int n = (int) readVarLong(block.bytes, position);
+                            n > 0;
+                            --n) {
+                        int header = (int) readVarLong(block.bytes, position);
+                        int column = header >>> 2;
+                        switch (header & 3) {
+                        case KIND_INTEGER:
+                            decodedIntegers[column]
+                                += readZigZag(block.bytes, position);
+                            decodedValues[column]
+                                = Long.toString(decodedIntegers[column]);
+                            break;
+                        case KIND_DECIMAL:
+                            int scale
+                                = (int) readVarLong(block.bytes, position);
+                            long unscaled = readZigZag(block.bytes, position);
+                            s.setLength(0);
+                            appendDecimal(s, unscaled, scale);
+                            decodedValues[column] = s.toString();
+                            break;
+                        case KIND_STRING:
+                            decodedValues[column]
+                                = strings.get(
+                                    (int) readVarLong(block.bytes, position));
+                            break;
+                        default:
+                            decodedValues[column] = null;
+                            break;
+                        }
+                    }
+
+                    s.setLength(0);
+                    s.append("{\"timestamp\":").append(timestamp)
+                        .append(",\"reports\":{");
+                    boolean firstReport = true;
+                    for (Map.Entry<String, List<Integer>> e
+                            : reportColumns.entrySet()) {
+                        boolean firstValue = true;
+                        for (Integer column : e.getValue()) {
+                            String value = decodedValues[column];
+                            if (value == null) {
+                                continue;
+                            }
+                            if (firstValue) {
+                                firstValue = false;
+                                if (firstReport) {
+                                    firstReport = false;
+                                } else {
+                                    s.append(',');
+                                }
+                                StatsDeltaEncoder.appendJSONString(
+                                    s,
+                                    e.getKey());
+                                s.append(":{");
+                            } else {
+                                s.append(',');
+                            }
+                            StatsDeltaEncoder.appendJSONString(
+                                s,
+                                columnNames.get(column));
+                            s.append(':');
+                            if (TYPE_COLUMN.equals(columnNames.get(column))) {
+                                StatsDeltaEncoder.appendJSONString(s, value);
+                            } else {
+                                TypedStatsEncoder.appendJSONValue(s, value);
+                            }
+                        }
+                        if (!firstValue) {
+                            s.append('}');
+                        }
+                    }
+                    s.append("}}\n");
+                    writer.append(s);
+                    ++sampleCount;
+                }
+            }
+        } finally {
+            writer.close();
+        }
+        return sampleCount;
+    }
+
+    /**
+     * Determines whether the columns and the strings may not grow anymore and
+     * logs it the first time.
+     */
+    private boolean isDictionaryFull() {
+        if (!dictionaryFull && dictionaryBytes >= maxDictionaryBytes) {
+            dictionaryFull = true;
+            Log.w(TAG, "Stats recording dictionary full (" + dictionaryBytes
+                + " bytes), not recording new report ids, names and strings");
+        }
+        return dictionaryFull;
+    }
+
+    /**
+     * Gets the index of the column of a specific report id and value name.
+     *
+     * @return the index of the column or <tt>-1</tt> if there is no such
+     * column and the dictionary is full
+     */
+    private int getColumnIndex(String reportId, String name) {
+        Map<String, Integer> indexes = columnIndexes.get(reportId);
+        if (indexes == null) {
+            if (isDictionaryFull()) {
+                return -1;
+            }
+            indexes = new HashMap<String, Integer>();
+            columnIndexes.put(reportId, indexes);
+            dictionaryBytes += 2 * reportId.length() + 64;
+        }
+
+        Integer index = indexes.get(name);
+        if (index == null) {
+            if (isDictionaryFull()) {
+                return -1;
+            }
+            index = columnNames.size();
+            indexes.put(name, index);
+            columnReportIds.add(reportId);
+            columnNames.add(name);
+            dictionaryBytes += 2 * name.length() + 48;
+
+            if (index >= values.length) {
+                int length = 2 * values.length;
+                values = Arrays.copyOf(values, length);
+                lastValues = Arrays.copyOf(lastValues, length);
+                lastIntegers = Arrays.copyOf(lastIntegers, length);
+            }
+        }
+        return index;
+    }
+
+    private int getStringIndex(String value) {
+        Integer index = stringIndexes.get(value);
+        if (index == null) {
+            index = strings.size();
+            stringIndexes.put(value, index);
+            strings.add(value);
+            dictionaryBytes += 2 * value.length() + 48;
+        }
+        return index;
+    }
+
+    /**
+     * Gets the estimated number of bytes used by this recorder.
+     */
+    int getUsedBytes() {
+        int usedBytes = dictionaryBytes;
+        for (Block block : blocks) {
+            usedBytes += block.bytes.length;
+        }
+        return usedBytes;
+    }
+
+    @Override
+    public void onStatsSampled(StatsReport[] reports) {
+        long timestamp = 0;
+
+        for (StatsReport report : reports) {
+            setValue(report.id, TYPE_COLUMN, report.type);
+            for (StatsReport.Value v : report.values) {
+                if (!TYPE_COLUMN.equals(v.name)) {
+                    setValue(report.id, v.name, v.value);
+                }
+            }
+            timestamp = Math.max(timestamp, (long) report.timestamp);
+        }
+        if (timestamp == 0) {
+            timestamp = System.currentTimeMillis();
+        }
+
+        Block block = blocks.peekLast();
+        if (block == null || block.sampleCount >= SAMPLES_PER_BLOCK) {
+            block = new Block();
+            blocks.add(block);
+            Arrays.fill(lastValues, null);
+            Arrays.fill(lastIntegers, 0);
+        }
+        encodeSample(block, timestamp);
+        Arrays.fill(values, null);
+
+        trim();
+    }
+
+    /**
+     * Sets the value of the column of a specific report id and value name in
+     * the sample being encoded unless the value would need a new column or a
+     * new string and the dictionary is full.
+     */
+    private void setValue(String reportId, String name, String value) {
+        int column = getColumnIndex(reportId, name);
+        if (column == -1) {
+            return;
+        }
+        if (dictionaryFull
+                && value != null
+                && !stringIndexes.containsKey(value)
+                && (TYPE_COLUMN.equals(name) || parseDecimal(value) == null)) {
+            return;
+        }
+        values[column] = value;
+    }
+
+    private void encodeSample(Block block, long timestamp) {
+        int columnCount = columnNames.size();
+        int changed = 0;
+
+        for (int i = 0; i < columnCount; ++i) {
+            String value = values[i];
+            if (value == null ? lastValues[i] != null
+                    : !value.equals(lastValues[i])) {
+                ++changed;
+            }
+        }
+
+        block.writeZigZag(timestamp - block.lastTimestamp);
+        block.lastTimestamp = timestamp;
+        block.writeVarLong(changed);
+        for (int i = 0; i < columnCount; ++i) {
+            String value = values[i];
+            String lastValue = lastValues[i];
+            if (value == null) {
+                if (lastValue != null) {
+                    block.writeVarLong((i << 2) | KIND_REMOVED);
+                }
+                continue;
+            }
+            if (value.equals(lastValue)) {
+                continue;
+            }
+
+            long[] decimal
+                = TYPE_COLUMN.equals(columnNames.get(i))
+                    ? null
+                    : parseDecimal(value);
+            if (decimal == null) {
+                block.writeVarLong((i << 2) | KIND_STRING);
+                block.writeVarLong(getStringIndex(value));
+            } else if (decimal[1] == 0) {
+                block.writeVarLong((i << 2) | KIND_INTEGER);
+                block.writeZigZag(decimal[0] - lastIntegers[i]);
+                lastIntegers[i] = decimal[0];
+            } else {
+                block.writeVarLong((i << 2) | KIND_DECIMAL);
+                block.writeVarLong(decimal[1]);
+                block.writeZigZag(decimal[0]);
+            }
+            lastValues[i] = value;
+        }
+        for (int i = 0; i < columnCount; ++i) {
+            if (values[i] == null) {
+                lastValues[i] = null;
+            }
+        }
+        ++block.sampleCount;
+    }
+
+    void start() {
+        sampler.start();
+    }
+
+    void stop() {
+        sampler.stop();
+    }
+
+    /**
+     * Evicts the oldest blocks until the memory used is within the cap. The
+     * block being encoded into is never evicted.
+     */
+    private void trim() {
+        int usedBytes = getUsedBytes();
+
+        while (usedBytes > maxBytes && blocks.size() > 1) {
+            usedBytes -= blocks.poll().bytes.length;
+        }
+    }
+
+    /**
+     * A block of encoded samples.
+     */
+    private static class Block {
+        byte[] bytes = new byte[1024];
+
+        /**
+         * The number of bytes of {@link #bytes} which are used.
+         */
+        int length;
+
+        /**
+         * The timestamp of the last sample encoded into this block.
+         */
+        long lastTimestamp;
+
+        int sampleCount;
+
+        private void write(int b) {
+            if (length == bytes.length) {
+                bytes = Arrays.copyOf(bytes, 2 * bytes.length);
+            }
+            bytes[length++] = (byte) b;
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7fL) != 0) {
+                write((int) ((value & 0x7f) | 0x80));
+                value >>>= 7;
+            }
+            write((int) value);
+        }
+
+        void writeZigZag(long value) {
+            writeVarLong((value << 1) ^ (value >> 63));
+        }
+    }
+}
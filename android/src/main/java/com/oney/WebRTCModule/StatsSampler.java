@@ -0,0 +1,98 @@
+package com.oney.WebRTCModule;
+
+import android.os.Handler;
+
+import org.webrtc.PeerConnection;
+import org.webrtc.StatsObserver;
+import org.webrtc.StatsReport;
+
+/**
+ * Periodically samples the statistics of a <tt>PeerConnection</tt> and hands
+ * the <tt>StatsReport</tt>s over to a {@link Listener} on a specific
+ * <tt>Handler</tt> (i.e. off the WebRTC signaling thread).
+ */
+class StatsSampler {
+    /**
+     * The interface of the consumers of the <tt>StatsReport</tt>s sampled by
+     * a <tt>StatsSampler</tt>.
+     */
+    interface Listener {
+        /**
+         * Notifies this {@code Listener} about a sample of statistics.
+         *
+         * @param reports the sampled <tt>StatsReport</tt>s
+         */
+        void onStatsSampled(StatsReport[] reports);
+    }
+
+    private final Handler handler;
+
+    private final int intervalMs;
+
+    private final Listener listener;
+
+    private final PeerConnection peerConnection;
+
+    /**
+     * The {@code Runnable} which requests a sample and schedules the next one.
+     */
+    private final Runnable sampleRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (started) {
+                peerConnection.getStats(statsObserver, null);
+                handler.postDelayed(this, intervalMs);
+            }
+        }
+    };
+
+    private volatile boolean started;
+
+    private final StatsObserver statsObserver = new StatsObserver() {
+        @Override
+        public void onComplete(final StatsReport[] reports) {
+            // Invoked on the WebRTC signaling thread. Do not keep it busy.
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (started) {
+                        listener.onStatsSampled(reports);
+                    }
+                }
+            });
+        }
+    };
+
+    StatsSampler(
+            PeerConnection peerConnection,
+            Handler handler,
+            int intervalMs,
+            Listener listener) {
+        this.peerConnection = peerConnection;
+        this.handler = handler;
+        this.intervalMs = intervalMs;
+        this.listener = listener;
+    }
+
+    int getIntervalMs() {
+        return intervalMs;
+    }
+
+    /**
+     * Starts sampling. The first sample is requested immediately.
+     */
+    void start() {
+        if (!started) {
+            started = true;
+            handler.post(sampleRunnable);
+        }
+    }
+
+    /**
+     * Stops sampling. A sample which is in flight is dropped.
+     */
+    void stop() {
+        started = false;
+        handler.removeCallbacks(sampleRunnable);
+    }
+}
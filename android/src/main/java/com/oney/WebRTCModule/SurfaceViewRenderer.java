@@ -9,6 +9,10 @@
  */
 
 // Retrieved from upstream's master on August 26, 2016.
+//
+// XXX Modified to render on a thread acquired from RenderThreadPool (shared
+// with other renderers) rather than on a dedicated thread. Consequently, the
+// EGLContext of this renderer is made current before every use.
 
 package com.oney.WebRTCModule;
 
@@ -37,6 +41,7 @@ import org.webrtc.VideoRenderer;
 /**
  * Implements org.webrtc.VideoRenderer.Callbacks by displaying the video stream on a SurfaceView.
  * renderFrame() is asynchronous to avoid blocking the calling thread.
+ * The render thread is acquired from RenderThreadPool and may be shared with other renderers.
  * This class is thread safe and handles access from potentially four different threads:
  * Interaction from the main app in init, release, setMirror, and setScalingtype.
  * Interaction from C++ rtc::VideoSinkInterface in renderFrame.
@@ -47,7 +52,7 @@ public class SurfaceViewRenderer extends SurfaceView
     implements SurfaceHolder.Callback, VideoRenderer.Callbacks {
   private static final String TAG = "SurfaceViewRenderer";
 
-  // Dedicated render thread.
+  // Render thread acquired from RenderThreadPool, possibly shared with other renderers.
   private HandlerThread renderThread;
   // |renderThreadHandler| is a handler for communicating with |renderThread|, and is synchronized
   // on |handlerLock|.
@@ -164,8 +169,7 @@ public class SurfaceViewRenderer extends SurfaceView
       Logging.d(TAG, getResourceName() + "Initializing.");
       this.rendererEvents = rendererEvents;
       this.drawer = drawer;
-      renderThread = new HandlerThread(TAG);
-      renderThread.start();
+      renderThread = RenderThreadPool.acquire(this);
       eglBase = EglBase.create(sharedContext, configAttributes);
       renderThreadHandler = new Handler(renderThread.getLooper());
     }
@@ -184,7 +188,7 @@ public class SurfaceViewRenderer extends SurfaceView
         synchronized (layoutLock) {
           if (eglBase != null && isSurfaceCreated && !eglBase.hasSurface()) {
             eglBase.createSurface(getHolder().getSurface());
-            eglBase.makeCurrent();
+            makeCurrent();
             // Necessary for YUV frames with odd width.
             GLES20.glPixelStorei(GLES20.GL_UNPACK_ALIGNMENT, 1);
           }
@@ -212,14 +216,15 @@ public class SurfaceViewRenderer extends SurfaceView
       // Activity.onDestroy().
       renderThreadHandler.postAtFrontOfQueue(new Runnable() {
         @Override public void run() {
-          drawer.release();
-          drawer = null;
-          if (yuvTextures != null) {
-            GLES20.glDeleteTextures(3, yuvTextures, 0);
-            yuvTextures = null;
+          // The GL resources can only be released while the EGLContext is
+          // current which requires a surface. Otherwise, they have already
+          // been released in surfaceDestroyed().
+          if (makeCurrent()) {
+            releaseGlResources();
+            // Clear last rendered image to black.
+            makeBlack();
           }
-          // Clear last rendered image to black.
-          makeBlack();
+          drawer = null;
           eglBase.release();
           eglBase = null;
           eglCleanupBarrier.countDown();
@@ -230,15 +235,16 @@ public class SurfaceViewRenderer extends SurfaceView
     }
     // Make sure the EGL/GL cleanup posted above is executed.
     ThreadUtils.awaitUninterruptibly(eglCleanupBarrier);
-    renderThread.quit();
     synchronized (frameLock) {
       if (pendingFrame != null) {
         VideoRenderer.renderFrameDone(pendingFrame);
         pendingFrame = null;
       }
     }
-    // The |renderThread| cleanup is not safe to cancel and we need to wait until it's done.
-    ThreadUtils.joinUninterruptibly(renderThread);
+    // The render thread may be shared with other renderers so it is not quit
+    // here. Any messages of this renderer still queued on it find |eglBase|
+    // null and do nothing.
+    RenderThreadPool.release(this);
     renderThread = null;
     // Reset statistics and event reporting.
     synchronized (layoutLock) {
@@ -264,6 +270,42 @@ public class SurfaceViewRenderer extends SurfaceView
     }
   }
 
+  /**
+   * Snapshot of the rendering statistics of a SurfaceViewRenderer.
+   */
+  public static class Statistics {
+    public final int framesReceived;
+    public final int framesDropped;
+    public final int framesRendered;
+    // Total time in ns spent in renderFrameOnRenderThread().
+    public final long renderTimeNs;
+    // Name of the (possibly shared) render thread, or null if not initialized.
+    public final String renderThreadName;
+
+    Statistics(int framesReceived, int framesDropped, int framesRendered, long renderTimeNs,
+        String renderThreadName) {
+      this.framesReceived = framesReceived;
+      this.framesDropped = framesDropped;
+      this.framesRendered = framesRendered;
+      this.renderTimeNs = renderTimeNs;
+      this.renderThreadName = renderThreadName;
+    }
+  }
+
+  /**
+   * Returns a snapshot of the statistics logged in logStatistics().
+   */
+  public Statistics getStatistics() {
+    final HandlerThread renderThread;
+    synchronized (handlerLock) {
+      renderThread = this.renderThread;
+    }
+    synchronized (statisticsLock) {
+      return new Statistics(framesReceived, framesDropped, framesRendered, renderTimeNs,
+          renderThread == null ? null : renderThread.getName());
+    }
+  }
+
   /**
    * Set if the video stream should be mirrored or not.
    */
@@ -384,6 +426,11 @@ public class SurfaceViewRenderer extends SurfaceView
       @Override
       public void run() {
         if (eglBase != null) {
+          // Release the GL resources while the EGLContext can still be made
+          // current. They are recreated on demand.
+          if (makeCurrent()) {
+            releaseGlResources();
+          }
           eglBase.detachCurrent();
           eglBase.releaseSurface();
         }
@@ -421,11 +468,36 @@ public class SurfaceViewRenderer extends SurfaceView
     }
   }
 
+  /**
+   * Makes the EGLContext of this renderer current on the render thread which may have been used
+   * by another renderer in the meantime. Returns false if there is no surface to make current.
+   */
+  private boolean makeCurrent() {
+    if (eglBase != null && eglBase.hasSurface()) {
+      eglBase.makeCurrent();
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * Releases the GL resources allocated for drawing. Must be called with the EGLContext current.
+   */
+  private void releaseGlResources() {
+    if (drawer != null) {
+      drawer.release();
+    }
+    if (yuvTextures != null) {
+      GLES20.glDeleteTextures(3, yuvTextures, 0);
+      yuvTextures = null;
+    }
+  }
+
   private void makeBlack() {
     if (Thread.currentThread() != renderThread) {
       throw new IllegalStateException(getResourceName() + "Wrong thread.");
     }
-    if (eglBase != null && eglBase.hasSurface()) {
+    if (makeCurrent()) {
       GLES20.glClearColor(0, 0, 0, 0);
       GLES20.glClear(GLES20.GL_COLOR_BUFFER_BIT);
       eglBase.swapBuffers();
@@ -470,7 +542,7 @@ public class SurfaceViewRenderer extends SurfaceView
       pendingFrame = null;
     }
     updateFrameDimensionsAndReportEvents(frame);
-    if (eglBase == null || !eglBase.hasSurface()) {
+    if (!makeCurrent()) {
       Logging.d(TAG, getResourceName() + "No surface to draw on");
       VideoRenderer.renderFrameDone(frame);
       return;
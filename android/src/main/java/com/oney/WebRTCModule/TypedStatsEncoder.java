@@ -0,0 +1,152 @@
+package com.oney.WebRTCModule;
+
+import java.util.Set;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Encodes <tt>StatsReport</tt>s as a flat JSON object keyed by report id in
+ * which the values are typed i.e. numeric values (e.g. <tt>bytesSent</tt>,
+ * <tt>packetsLost</tt>, <tt>googRtt</tt>) are JSON numbers and boolean values
+ * are JSON booleans so that JavaScript does not have to parse hundreds of
+ * strings per poll:
+ * <pre>
+ * {
+ *   "&lt;report id&gt;": {
+ *     "type": "&lt;report type&gt;",
+ *     "timestamp": &lt;report timestamp&gt;,
+ *     "&lt;value name&gt;": &lt;number, boolean or string&gt;,
+ *     ...
+ *   },
+ *   ...
+ * }
+ * </pre>
+ * A value is considered numeric if it is a valid JSON number literal in which
+ * case it is copied verbatim (i.e. it is neither parsed nor formatted).
+ */
+final class TypedStatsEncoder {
+    private TypedStatsEncoder() {
+    }
+
+    /**
+     * Appends a specific stats value to a specific <tt>StringBuilder</tt> as a
+     * JSON number, boolean or string (in this order of preference).
+     */
+    static void appendJSONValue(StringBuilder s, String value) {
+        if (isJSONNumber(value)
+                || "true".equals(value)
+                || "false".equals(value)) {
+            s.append(value);
+        } else {
+            StatsDeltaEncoder.appendJSONString(s, value);
+        }
+    }
+
+    /**
+     * Encodes specific <tt>StatsReport</tt>s.
+     *
+     * @param reports the <tt>StatsReport</tt>s to encode
+     * @param types the types of the <tt>StatsReport</tt>s to encode or
+     * <tt>null</tt> to encode all of them
+     * @param s the <tt>StringBuilder</tt> to encode into
+     * @return <tt>s</tt>
+     */
+    static StringBuilder encode(
+            StatsReport[] reports,
+            Set<String> types,
+            StringBuilder s) {
+        boolean firstReport = true;
+
+        s.append('{');
+        for (StatsReport report : reports) {
+            if (types != null && !types.contains(report.type)) {
+                continue;
+            }
+            if (firstReport) {
+                firstReport = false;
+            } else {
+                s.append(',');
+            }
+            StatsDeltaEncoder.appendJSONString(s, report.id);
+            s.append(":{\"type\":");
+            StatsDeltaEncoder.appendJSONString(s, report.type);
+            s.append(",\"timestamp\":").append(report.timestamp);
+            for (StatsReport.Value v : report.values) {
+                // The type and the timestamp of the report are not values.
+                if ("type".equals(v.name) || "timestamp".equals(v.name)) {
+                    continue;
+                }
+                s.append(',');
+                StatsDeltaEncoder.appendJSONString(s, v.name);
+                s.append(':');
+                appendJSONValue(s, v.value);
+            }
+            s.append('}');
+        }
+        s.append('}');
+        return s;
+    }
+
+    /**
+     * Determines whether a specific <tt>String</tt> is a valid JSON number
+     * literal (RFC 7159, section 6).
+     */
+    static boolean isJSONNumber(String str) {
+        if (str == null) {
+            return false;
+        }
+
+        final int length = str.length();
+        int i = 0;
+
+        if (i < length && str.charAt(i) == '-') {
+            ++i;
+        }
+        // int
+        if (i >= length) {
+            return false;
+        }
+        if (str.charAt(i) == '0') {
+            ++i;
+        } else if (isDigit(str, i)) {
+            while (isDigit(str, i)) {
+                ++i;
+            }
+        } else {
+            return false;
+        }
+        // frac
+        if (i < length && str.charAt(i) == '.') {
+            ++i;
+            if (!isDigit(str, i)) {
+                return false;
+            }
+            while (isDigit(str, i)) {
+                ++i;
+            }
+        }
+        // exp
+        if (i < length && (str.charAt(i) == 'e' || str.charAt(i) == 'E')) {
+            ++i;
+            if (i < length && (str.charAt(i) == '+' || str.charAt(i) == '-')) {
+                ++i;
+            }
+            if (!isDigit(str, i)) {
+                return false;
+            }
+            while (isDigit(str, i)) {
+                ++i;
+            }
+        }
+        return i == length;
+    }
+
+    private static boolean isDigit(String str, int index) {
+        if (index >= str.length()) {
+            return false;
+        }
+
+        char c = str.charAt(index);
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,73 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Decodes the text messages of a <tt>DataChannel</tt> from UTF-8 straight out
+ * of the (typically direct) <tt>ByteBuffer</tt>s in which they are received
+ * i.e. without copying them into intermediate <tt>byte</tt> arrays first.
+ * Reuses its decoder and its buffer across messages.
+ *
+ * Not thread-safe.
+ */
+class UTF8Decoder {
+    /**
+     * The maximum capacity (in chars) up to which {@link #scratch} grows.
+     * Larger text messages are decoded into temporary buffers so that a
+     * single large message does not pin its size in memory for the lifetime
+     * of the <tt>DataChannel</tt>.
+     */
+    private static final int MAX_SCRATCH_CAPACITY = 64 * 1024;
+
+    /**
+     * The decoder of the text messages. Replaces malformed input the way
+     * <tt>new String(byte[], Charset)</tt> does.
+     */
+    private final CharsetDecoder decoder
+        = Charset.forName("UTF-8").newDecoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    /**
+     * The buffer into which text messages are decoded.
+     */
+    private CharBuffer scratch = CharBuffer.allocate(1024);
+
+    /**
+     * Decodes the remaining bytes of a specific <tt>ByteBuffer</tt> as UTF-8.
+     * Besides the returned <tt>String</tt>, allocates only if the message is
+     * larger than any decoded before and larger than
+     * {@link #MAX_SCRATCH_CAPACITY}.
+     *
+     * @param data the <tt>ByteBuffer</tt> to decode. Its position is left as
+     * it is.
+     * @return the text represented by the remaining bytes of <tt>data</tt>
+     */
+    String decode(ByteBuffer data) {
+        // UTF-8 never decodes into more UTF-16 code units than bytes.
+        int capacity = data.remaining();
+        CharBuffer chars;
+
+        if (capacity <= scratch.capacity()) {
+            chars = scratch;
+        } else if (capacity <= MAX_SCRATCH_CAPACITY) {
+            chars = scratch = CharBuffer.allocate(capacity);
+        } else {
+            chars = CharBuffer.allocate(capacity);
+        }
+
+        // Leave the position of data as it is (without duplicating data).
+        int position = data.position();
+
+        chars.clear();
+        decoder.reset();
+        decoder.decode(data, chars, true);
+        decoder.flush(chars);
+        data.position(position);
+        return new String(chars.array(), chars.arrayOffset(), chars.position());
+    }
+}
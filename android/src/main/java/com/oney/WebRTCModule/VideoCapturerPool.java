@@ -0,0 +1,403 @@
+package com.oney.WebRTCModule;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableArray;
+import com.facebook.react.bridge.WritableMap;
+
+import org.webrtc.MediaConstraints;
+import org.webrtc.VideoCapturer;
+import org.webrtc.VideoCapturerAndroid;
+import org.webrtc.VideoSource;
+
+/**
+ * Caches the <tt>VideoCapturer</tt>s and the <tt>VideoSource</tt>s fed by them
+ * per camera device name so that multiple local video tracks of one and the
+ * same camera share a single capturer and source. An entry is reference
+ * counted by the tracks which use it; when the last of them is released, the
+ * entry is kept (capturing) for a configurable idle timeout so that a quick
+ * re-acquisition (e.g. rejoining a call or toggling video) starts instantly
+ * instead of paying for opening the camera again.
+ *
+ * Cameras are stopped asynchronously on a dedicated thread because
+ * <tt>VideoCapturer.stopCapture</tt> blocks for hundreds of milliseconds on
+ * some devices. Until the stop actually starts, it is pending and a
+ * re-acquisition of the camera cancels it and reuses the capturer. When a
+ * camera has stopped, a <tt>videoCapturerStopped</tt> event is sent to
+ * JavaScript.
+ *
+ * Note that the constraints of the first acquisition of a camera determine
+ * the capture format of its <tt>VideoSource</tt>.
+ */
+class VideoCapturerPool {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * A camera which is capturing, the <tt>VideoSource</tt> fed by it and the
+     * number of tracks using it.
+     */
+    private static class Entry {
+        final VideoCapturer capturer;
+
+        /**
+         * The time this entry was created in milliseconds (since boot).
+         */
+        final long creationTime = SystemClock.elapsedRealtime();
+
+        final String deviceName;
+
+        /**
+         * The {@code Runnable} which evicts this entry after the idle timeout,
+         * if scheduled.
+         */
+        Runnable evictRunnable;
+
+        int refCount;
+
+        final VideoSource source;
+
+        Entry(String deviceName, VideoCapturer capturer, VideoSource source) {
+            this.deviceName = deviceName;
+            this.capturer = capturer;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Whether {@link #dispose()} has been invoked i.e. there is no JavaScript
+     * to send events to anymore.
+     */
+    private boolean disposed;
+
+    /**
+     * The entries of this pool keyed by camera device name.
+     */
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+
+    /**
+     * The {@code Handler} of {@link #stopThread}. Created along with the
+     * latter the first time it is needed.
+     */
+    private Handler stopHandler;
+
+    /**
+     * The {@code HandlerThread} on which the cameras are stopped.
+     */
+    private HandlerThread stopThread;
+
+    /**
+     * The names of the cameras which are being stopped. A camera cannot be
+     * opened again until it has stopped.
+     */
+    private final Set<String> stopping = new HashSet<String>();
+
+    /**
+     * The number of milliseconds for which an entry which is no longer used by
+     * any track is kept capturing. Zero (the default) stops the capture as
+     * soon as the last track is released which is what users expect from the
+     * camera indicator unless they have opted in.
+     */
+    private int idleTimeoutMs;
+
+    /**
+     * The entries of this pool keyed by the ids of the tracks which use them.
+     */
+    private final Map<String, Entry> tracks = new HashMap<String, Entry>();
+
+    private final WebRTCModule webRTCModule;
+
+    VideoCapturerPool(WebRTCModule webRTCModule) {
+        this.webRTCModule = webRTCModule;
+    }
+
+    /**
+     * Acquires the <tt>VideoSource</tt> of a specific camera for a specific
+     * track, opening the camera only if it is not capturing already.
+     *
+     * @param trackId the id of the track which is to use the acquired
+     * <tt>VideoSource</tt>
+     * @param deviceName the name of the camera
+     * @param constraints the constraints of the <tt>VideoSource</tt> if it is
+     * to be created
+     * @return the <tt>VideoSource</tt> of the camera or <tt>null</tt> if it
+     * could not be created
+     */
+    synchronized VideoSource acquire(
+            String trackId,
+            String deviceName,
+            MediaConstraints constraints) {
+        if (disposed) {
+            return null;
+        }
+
+        Entry entry = entries.get(deviceName);
+
+        if (entry == null) {
+            // The camera may not have been released by a (previous) capturer
+            // which is being stopped.
+            while (stopping.contains(deviceName)) {
+                Log.d(TAG, "Waiting for video capturer of " + deviceName
+                    + " to stop");
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+
+            VideoCapturer capturer
+                = VideoCapturerAndroid.create(
+                        deviceName,
+                        new CameraEventsHandler());
+            if (capturer == null) {
+                return null;
+            }
+
+            VideoSource source
+                = webRTCModule.getPeerConnectionFactory().createVideoSource(
+                        capturer, constraints);
+            if (source == null) {
+                stopCapture(deviceName, capturer);
+                return null;
+            }
+
+            entry = new Entry(deviceName, capturer, source);
+            entries.put(deviceName, entry);
+        } else {
+            Log.d(TAG, "Reusing video capturer of " + deviceName);
+            cancelEviction(entry);
+        }
+        ++entry.refCount;
+        tracks.put(trackId, entry);
+        return entry.source;
+    }
+
+    /**
+     * Cancels the pending stop of a specific entry, if any. Must be invoked
+     * with the lock of this instance held.
+     */
+    private void cancelEviction(Entry entry) {
+        if (entry.evictRunnable != null) {
+            if (stopHandler != null) {
+                stopHandler.removeCallbacks(entry.evictRunnable);
+            }
+            entry.evictRunnable = null;
+        }
+    }
+
+    /**
+     * Describes the cameras of this pool to JavaScript for the purposes of a
+     * census of the native objects (see
+     * {@link WebRTCModule#getResourceCensus}). A camera is flagged as leaked
+     * if it is used by tracks none of which is registered any longer.
+     *
+     * @param registry the registry of the tracks
+     * @return an array of objects with <tt>deviceName</tt>, <tt>state</tt>
+     * (<tt>capturing</tt>, <tt>stopPending</tt> or <tt>stopping</tt>),
+     * <tt>refCount</tt>, <tt>trackIds</tt>, <tt>age</tt> and <tt>leaked</tt>
+     * properties
+     */
+    synchronized WritableArray describe(MediaRegistry registry) {
+        long now = SystemClock.elapsedRealtime();
+        Map<Entry, WritableArray> trackIds
+            = new HashMap<Entry, WritableArray>();
+        Set<Entry> used = new HashSet<Entry>();
+
+        for (Map.Entry<String, Entry> e : tracks.entrySet()) {
+            WritableArray ids = trackIds.get(e.getValue());
+            if (ids == null) {
+                ids = Arguments.createArray();
+                trackIds.put(e.getValue(), ids);
+            }
+            ids.pushString(e.getKey());
+            if (registry.containsTrack(e.getKey())) {
+                used.add(e.getValue());
+            }
+        }
+
+        WritableArray array = Arguments.createArray();
+        for (Entry entry : entries.values()) {
+            WritableMap params = Arguments.createMap();
+            params.putString("deviceName", entry.deviceName);
+            params.putString(
+                "state",
+                entry.evictRunnable == null ? "capturing" : "stopPending");
+            params.putInt("refCount", entry.refCount);
+            WritableArray ids = trackIds.get(entry);
+            params.putArray(
+                "trackIds",
+                ids == null ? Arguments.createArray() : ids);
+            params.putDouble("age", now - entry.creationTime);
+            params.putBoolean(
+                "leaked",
+                entry.refCount > 0 && !used.contains(entry));
+            array.pushMap(params);
+        }
+        for (String deviceName : stopping) {
+            WritableMap params = Arguments.createMap();
+            params.putString("deviceName", deviceName);
+            params.putString("state", "stopping");
+            params.putInt("refCount", 0);
+            params.putArray("trackIds", Arguments.createArray());
+            params.putBoolean("leaked", false);
+            array.pushMap(params);
+        }
+        return array;
+    }
+
+    /**
+     * Releases the resources of this pool: stops all cameras right away
+     * (whether they are still used by tracks or their stops are pending) and
+     * then the thread on which the cameras are stopped. The tracks will not
+     * be released because there is no JavaScript to release them anymore.
+     */
+    synchronized void dispose() {
+        if (disposed) {
+            return;
+        }
+        if (entries.isEmpty() && stopHandler == null) {
+            disposed = true;
+            return;
+        }
+
+        tracks.clear();
+        for (final Entry entry : entries.values()) {
+            cancelEviction(entry);
+            entry.refCount = 0;
+            entry.evictRunnable = new Runnable() {
+                @Override
+                public void run() {
+                    evict(entry);
+                }
+            };
+            getStopHandler().post(entry.evictRunnable);
+        }
+
+        // After the evictions posted above (and any stop in progress).
+        final HandlerThread thread = stopThread;
+        stopHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                thread.quit();
+            }
+        });
+        stopHandler = null;
+        stopThread = null;
+        disposed = true;
+    }
+
+    /**
+     * Stops the capture of a specific entry and removes it from this pool
+     * unless it has been re-acquired in the meantime. Invoked on
+     * {@link #stopThread}.
+     */
+    private void evict(Entry entry) {
+        synchronized (this) {
+            if (entry.evictRunnable == null
+                    || entry.refCount > 0
+                    || entries.get(entry.deviceName) != entry) {
+                return;
+            }
+            entry.evictRunnable = null;
+            entries.remove(entry.deviceName);
+            stopping.add(entry.deviceName);
+        }
+
+        // Do not block acquisitions of other cameras while this one stops.
+        long startTime = System.currentTimeMillis();
+        String error = stopCapture(entry.deviceName, entry.capturer);
+
+        boolean disposed;
+        synchronized (this) {
+            stopping.remove(entry.deviceName);
+            notifyAll();
+            disposed = this.disposed;
+        }
+        if (disposed) {
+            return;
+        }
+
+        WritableMap params = Arguments.createMap();
+        params.putString("deviceName", entry.deviceName);
+        params.putDouble("duration", System.currentTimeMillis() - startTime);
+        if (error != null) {
+            params.putString("error", error);
+        }
+        webRTCModule.sendEvent("videoCapturerStopped", params);
+    }
+
+    /**
+     * Gets the {@code Handler} of the thread on which the cameras are stopped.
+     * Must be invoked with the lock of this instance held.
+     *
+     * @return the {@code Handler} of the thread on which the cameras are
+     * stopped or <tt>null</tt> if this pool has been disposed
+     */
+    private Handler getStopHandler() {
+        if (disposed) {
+            return null;
+        }
+        if (stopHandler == null) {
+            stopThread = new HandlerThread(TAG + ".camera");
+            stopThread.start();
+            stopHandler = new Handler(stopThread.getLooper());
+        }
+        return stopHandler;
+    }
+
+    /**
+     * Releases the <tt>VideoSource</tt> acquired for a specific track. The
+     * camera stops capturing (asynchronously) after the idle timeout if no
+     * other track is using it.
+     *
+     * @param trackId the id of the track which no longer uses the
+     * <tt>VideoSource</tt> it has acquired
+     */
+    synchronized void release(String trackId) {
+        if (disposed) {
+            return;
+        }
+
+        final Entry entry = tracks.remove(trackId);
+
+        if (entry == null || --entry.refCount > 0) {
+            return;
+        }
+        entry.evictRunnable = new Runnable() {
+            @Override
+            public void run() {
+                evict(entry);
+            }
+        };
+        getStopHandler().postDelayed(entry.evictRunnable, idleTimeoutMs);
+    }
+
+    synchronized void setIdleTimeout(int idleTimeoutMs) {
+        this.idleTimeoutMs = Math.max(0, idleTimeoutMs);
+    }
+
+    /**
+     * Stops the capture of a specific camera.
+     *
+     * @return <tt>null</tt> if the capture has stopped or an error message
+     */
+    private static String stopCapture(String deviceName, VideoCapturer capturer) {
+        try {
+            capturer.stopCapture();
+        } catch (InterruptedException e) {
+            Log.e(TAG, "Failed to stop video capturer of " + deviceName);
+            return "Interrupted";
+        }
+        return null;
+    }
+}
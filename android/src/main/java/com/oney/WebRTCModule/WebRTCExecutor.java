@@ -0,0 +1,136 @@
+package com.oney.WebRTCModule;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.util.Log;
+
+import com.facebook.react.bridge.Arguments;
+import com.facebook.react.bridge.WritableMap;
+
+/**
+ * The serial executor of the WebRTC operations requested by JavaScript (i.e.
+ * the bodies of the React methods of {@link WebRTCModule}). Takes blocking
+ * native calls such as <tt>createPeerConnection</tt>,
+ * <tt>createVideoSource</tt> and <tt>VideoCapturer.stopCapture</tt> off the
+ * React native-modules thread which is shared by all native modules of the
+ * app. The operations are executed one at a time in the order in which they
+ * were requested, so the state of the module which they access needs no
+ * further synchronization among them. <tt>Callback</tt>s and events may be
+ * invoked and sent from any thread and so they are invoked and sent from the
+ * thread of this executor directly.
+ *
+ * Measures the depth of its queue and the time operations wait in it and
+ * take to execute so that it can be seen when it backs up.
+ */
+class WebRTCExecutor {
+    private final static String TAG = WebRTCModule.TAG;
+
+    /**
+     * The number of milliseconds above which an operation is logged as slow.
+     */
+    private static final long SLOW_TASK_MS = 100;
+
+    private final Handler handler;
+
+    /**
+     * The largest number of operations which have been waiting or executing
+     * at the same time.
+     */
+    private int maxQueueDepth;
+
+    /**
+     * The number of operations which are waiting or executing.
+     */
+    private final AtomicInteger queueDepth = new AtomicInteger();
+
+    /**
+     * The time operations wait in the queue in microseconds.
+     */
+    private final LatencyHistogram queueTime = new LatencyHistogram();
+
+    /**
+     * The time operations take to execute in microseconds.
+     */
+    private final LatencyHistogram runTime = new LatencyHistogram();
+
+    private final HandlerThread thread;
+
+    WebRTCExecutor() {
+        thread = new HandlerThread(TAG + ".webrtc");
+        thread.start();
+        handler = new Handler(thread.getLooper());
+    }
+
+    /**
+     * Stops the thread of this executor once the operations which have been
+     * requested so far have been executed.
+     */
+    void dispose() {
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                thread.quit();
+            }
+        });
+    }
+
+    /**
+     * Executes a specific operation on the thread of this executor after the
+     * operations which have been requested before it.
+     *
+     * @param name the name of the operation (e.g. of the React method) to log
+     * if it is slow
+     * @param runnable the operation to execute
+     */
+    void execute(final String name, final Runnable runnable) {
+        final long enqueueTime = System.nanoTime();
+        int depth = queueDepth.incrementAndGet();
+
+        synchronized (this) {
+            if (depth > maxQueueDepth) {
+                maxQueueDepth = depth;
+            }
+        }
+
+        handler.post(new Runnable() {
+            @Override
+            public void run() {
+                long startTime = System.nanoTime();
+                try {
+                    runnable.run();
+                } finally {
+                    long endTime = System.nanoTime();
+                    queueDepth.decrementAndGet();
+                    queueTime.record((startTime - enqueueTime) / 1000);
+                    runTime.record((endTime - startTime) / 1000);
+
+                    long runTimeMs = (endTime - startTime) / 1000000;
+                    if (runTimeMs > SLOW_TASK_MS) {
+                        Log.w(TAG, name + "() took " + runTimeMs + " ms, "
+                            + queueDepth.get() + " operations queued");
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Describes the metrics of this executor to JavaScript: the current and
+     * maximum queue depths and the histograms of the times operations wait in
+     * the queue (<tt>queueTime</tt>) and take to execute (<tt>runTime</tt>) in
+     * microseconds.
+     */
+    WritableMap getMetrics() {
+        WritableMap metrics = Arguments.createMap();
+
+        metrics.putInt("queueDepth", queueDepth.get());
+        synchronized (this) {
+            metrics.putInt("maxQueueDepth", maxQueueDepth);
+        }
+        metrics.putMap("queueTime", queueTime.toWritableMap());
+        metrics.putMap("runTime", runTime.toWritableMap());
+        return metrics;
+    }
+}
@@ -3,6 +3,8 @@ package com.oney.WebRTCModule;
 import android.app.Application;
 
 import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 import android.provider.ContactsContract;
 import android.support.annotation.Nullable;
 
@@ -21,12 +23,15 @@ import com.facebook.react.bridge.ReadableArray;
 import com.facebook.react.bridge.ReadableType;
 import com.facebook.react.modules.core.DeviceEventManagerModule;
 
+import java.io.File;
+
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.Iterator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 import android.util.Base64;
@@ -34,6 +39,7 @@ import android.util.SparseArray;
 import android.hardware.Camera;
 import android.media.AudioManager;
 import android.content.Context;
+import android.view.View;
 import android.view.Window;
 import android.view.WindowManager;
 import android.app.Activity;
@@ -52,27 +58,146 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     private static final String LANGUAGE =  "language";
 
-    private final PeerConnectionFactory mFactory;
+    /**
+     * The {@code PeerConnectionFactory} of this module. Created the first
+     * time it is requested (or when prewarming is requested) rather than upon
+     * the construction of this module so that the loading of the native
+     * library and the initialization of the factory do not delay the
+     * initialization of the React context of apps which do not (immediately)
+     * use WebRTC. Synchronized on {@link #mFactoryLock}.
+     */
+    private PeerConnectionFactory mFactory;
+
+    private final Object mFactoryLock = new Object();
     private final SparseArray<PeerConnectionObserver> mPeerConnectionObservers;
-    public final Map<String, MediaStream> mMediaStreams;
-    public final Map<String, MediaStreamTrack> mMediaStreamTracks;
-    private final Map<String, VideoCapturer> mVideoCapturers;
+
+    /**
+     * The <tt>MediaStream</tt>s and the local <tt>MediaStreamTrack</tt>s
+     * known to JavaScript.
+     */
+    final MediaRegistry mMediaRegistry;
+
+    /**
+     * The cameras (i.e. the <tt>VideoCapturer</tt>s and <tt>VideoSource</tt>s)
+     * of the local video tracks, shared by the tracks of one and the same
+     * camera.
+     */
+    private final VideoCapturerPool mVideoCapturerPool;
     private final MediaConstraints pcConstraints = new MediaConstraints();
+    private final EventBatcher mEventBatcher;
+
+    /**
+     * The serial executor of the WebRTC operations requested by JavaScript.
+     */
+    private final WebRTCExecutor mExecutor;
+
+    /**
+     * The {@code Handler} of {@link #mBackgroundThread}. Created along with
+     * the latter the first time it is requested.
+     */
+    private Handler mBackgroundHandler;
+
+    /**
+     * The {@code HandlerThread} on which time-based work (e.g. the delivery
+     * of ICE candidate batches) is carried out off the WebRTC signaling
+     * thread and the thread of {@link #mExecutor}.
+     */
+    private HandlerThread mBackgroundThread;
+
+    /**
+     * Whether {@link #mBackgroundThread} has been quit upon the destruction
+     * of the React instance and is not to be (re)created any longer.
+     */
+    private boolean mBackgroundThreadDisposed;
+
+    /**
+     * The options of the recording of the statistics of every
+     * <tt>PeerConnection</tt> or <tt>null</tt> if the statistics are not
+     * recorded. Accessed on the thread of {@link #mExecutor} only.
+     */
+    private StatsRecordingOptions mStatsRecordingOptions;
 
     public WebRTCModule(ReactApplicationContext reactContext) {
         super(reactContext);
 
+        long startTime = SystemClock.elapsedRealtime();
+
         mPeerConnectionObservers = new SparseArray<PeerConnectionObserver>();
-        mMediaStreams = new HashMap<String, MediaStream>();
-        mMediaStreamTracks = new HashMap<String, MediaStreamTrack>();
-        mVideoCapturers = new HashMap<String, VideoCapturer>();
+        mMediaRegistry = new MediaRegistry();
+        mVideoCapturerPool = new VideoCapturerPool(this);
+        mEventBatcher = new EventBatcher(reactContext);
+        mExecutor = new WebRTCExecutor();
 
         pcConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveAudio", "true"));
         pcConstraints.mandatory.add(new MediaConstraints.KeyValuePair("OfferToReceiveVideo", "true"));
         pcConstraints.optional.add(new MediaConstraints.KeyValuePair("DtlsSrtpKeyAgreement", "true"));
 
-        PeerConnectionFactory.initializeAndroidGlobals(reactContext, true, true, true);
-        mFactory = new PeerConnectionFactory();
+        // Startup trace: the time this module adds to the initialization of
+        // the React context. The initialization of the PeerConnectionFactory
+        // used to be included and is traced separately now.
+        Log.i(TAG, "WebRTCModule constructed in "
+            + (SystemClock.elapsedRealtime() - startTime) + " ms");
+    }
+
+    /**
+     * Gets the {@code PeerConnectionFactory} of this module, initializing it
+     * first if necessary.
+     *
+     * @return The {@code PeerConnectionFactory} of this module.
+     */
+    PeerConnectionFactory getPeerConnectionFactory() {
+        synchronized (mFactoryLock) {
+            if (mFactory == null) {
+                long startTime = SystemClock.elapsedRealtime();
+
+                PeerConnectionFactory.initializeAndroidGlobals(getReactApplicationContext(), true, true, true);
+                mFactory = new PeerConnectionFactory();
+
+                // Have the hardware video encoders and decoders work with textures
+                // in the EGLContext shared by the video renderers: decoded frames are
+                // then rendered as OES textures rather than downloaded into YUV planes
+                // and uploaded again by every renderer.
+                EglBase.Context eglContext = EglUtils.getRootEglBaseContext();
+                if (eglContext != null) {
+                    mFactory.setVideoHwAccelerationOptions(eglContext, eglContext);
+                }
+
+                Log.i(TAG, "PeerConnectionFactory initialized in "
+                    + (SystemClock.elapsedRealtime() - startTime) + " ms on thread "
+                    + Thread.currentThread().getName());
+            }
+            return mFactory;
+        }
+    }
+
+    /**
+     * Initializes the {@code PeerConnectionFactory} of this module on a
+     * background thread ahead of its first use (e.g. when the app is about to
+     * show its call screen) so that the first WebRTC operation does not pay
+     * for it.
+     */
+    @ReactMethod
+    public void prewarm() {
+        getBackgroundHandler().post(new Runnable() {
+            @Override
+            public void run() {
+                getPeerConnectionFactory();
+            }
+        });
+    }
+
+    /**
+     * Reports the metrics of the serial executor of the WebRTC operations
+     * requested by JavaScript (see {@link WebRTCExecutor#getMetrics()}).
+     * Answers right away i.e. not after the queued operations.
+     *
+     * @param callback invoked with an object with <tt>queueDepth</tt>,
+     * <tt>maxQueueDepth</tt>, <tt>queueTime</tt> and <tt>runTime</tt>
+     * properties
+     */
+    @ReactMethod
+    public void getWebRTCExecutorMetrics(Callback callback) {
+        callback.invoke(mExecutor.getMetrics());
     }
 
     @Override
@@ -104,10 +229,85 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         return (pco == null) ? null : pco.getPeerConnection();
     }
 
+    @Override
+    public void onCatalystInstanceDestroy() {
+        mEventBatcher.dispose();
+        // After the operations requested so far (which may release cameras).
+        mExecutor.execute("onCatalystInstanceDestroy", new Runnable() {
+            @Override
+            public void run() {
+                mVideoCapturerPool.dispose();
+                disposeBackgroundThread();
+            }
+        });
+        mExecutor.dispose();
+    }
+
+    /**
+     * Quits {@link #mBackgroundThread} once and for all. Invoked after the
+     * operations requested by JavaScript so far because they may post to it.
+     */
+    private synchronized void disposeBackgroundThread() {
+        mBackgroundThreadDisposed = true;
+        if (mBackgroundThread != null) {
+            mBackgroundThread.quit();
+        }
+    }
+
+    /**
+     * Gets the {@code Handler} on which time-based work is to be carried out
+     * off the WebRTC signaling thread and the React native-modules thread.
+     *
+     * @return The {@code Handler} on which time-based work is to be carried
+     * out. After the destruction of the React instance, its thread has quit
+     * i.e. the work posted to it is dropped.
+     */
+    synchronized Handler getBackgroundHandler() {
+        if (mBackgroundHandler == null) {
+            mBackgroundThread = new HandlerThread(TAG + ".background");
+            mBackgroundThread.start();
+            mBackgroundHandler = new Handler(mBackgroundThread.getLooper());
+            if (mBackgroundThreadDisposed) {
+                // Never used before the destruction of the React instance so
+                // do not keep a thread alive for it now.
+                mBackgroundThread.quit();
+            }
+        }
+        return mBackgroundHandler;
+    }
+
     void sendEvent(String eventName, @Nullable WritableMap params) {
-        getReactApplicationContext()
-            .getJSModule(DeviceEventManagerModule.RCTDeviceEventEmitter.class)
-            .emit(eventName, params);
+        mEventBatcher.sendEvent(eventName, params);
+    }
+
+    /**
+     * Sends an event to JavaScript and notifies a specific
+     * {@code EmitCallback} once it has actually been emitted. For more
+     * details, refer to {@link EventBatcher#sendEvent(String, WritableMap,
+     * EventBatcher.EmitCallback)}.
+     */
+    void sendEvent(
+            String eventName,
+            @Nullable WritableMap params,
+            @Nullable EventBatcher.EmitCallback callback) {
+        mEventBatcher.sendEvent(eventName, params, callback);
+    }
+
+    /**
+     * Gets the number of milliseconds for which the events sent to JavaScript
+     * are coalesced into batches (zero if they are not).
+     */
+    long getEventBatchingWindow() {
+        return mEventBatcher.getWindowMs();
+    }
+
+    /**
+     * Configures the coalescing of the events sent to JavaScript into batches.
+     * For more details, refer to {@link EventBatcher#configure(ReadableMap)}.
+     */
+    @ReactMethod
+    public void setEventBatching(ReadableMap options) {
+        mEventBatcher.configure(options);
     }
 
     private List<PeerConnection.IceServer> createIceServers(ReadableArray iceServersArray) {
@@ -155,17 +355,108 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         }
         List<PeerConnection.IceServer> iceServers = createIceServers(iceServersArray);
         PeerConnection.RTCConfiguration configuration = new PeerConnection.RTCConfiguration(iceServers);
-        // TODO: Implement the rest of the RTCConfigure options ...
+        if (map == null) {
+            return configuration;
+        }
+
+        // iceTransportPolicy (standard)
+        String iceTransportPolicy = getMapStrValue(map, "iceTransportPolicy");
+        if ("all".equals(iceTransportPolicy)) {
+            configuration.iceTransportsType = PeerConnection.IceTransportsType.ALL;
+        } else if ("relay".equals(iceTransportPolicy)) {
+            configuration.iceTransportsType = PeerConnection.IceTransportsType.RELAY;
+        } else if ("nohost".equals(iceTransportPolicy)) {
+            configuration.iceTransportsType = PeerConnection.IceTransportsType.NOHOST;
+        } else if ("none".equals(iceTransportPolicy)) {
+            configuration.iceTransportsType = PeerConnection.IceTransportsType.NONE;
+        }
+
+        // bundlePolicy (standard)
+        String bundlePolicy = getMapStrValue(map, "bundlePolicy");
+        if ("balanced".equals(bundlePolicy)) {
+            configuration.bundlePolicy = PeerConnection.BundlePolicy.BALANCED;
+        } else if ("max-compat".equals(bundlePolicy)) {
+            configuration.bundlePolicy = PeerConnection.BundlePolicy.MAXCOMPAT;
+        } else if ("max-bundle".equals(bundlePolicy)) {
+            configuration.bundlePolicy = PeerConnection.BundlePolicy.MAXBUNDLE;
+        }
+
+        // rtcpMuxPolicy (standard)
+        String rtcpMuxPolicy = getMapStrValue(map, "rtcpMuxPolicy");
+        if ("negotiate".equals(rtcpMuxPolicy)) {
+            configuration.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.NEGOTIATE;
+        } else if ("require".equals(rtcpMuxPolicy)) {
+            configuration.rtcpMuxPolicy = PeerConnection.RtcpMuxPolicy.REQUIRE;
+        }
+
+        // iceCandidatePoolSize (standard)
+        // The number of ICE candidates to gather ahead of the first
+        // createOffer() i.e. whilst the app is still setting up the call.
+        if (map.hasKey("iceCandidatePoolSize")
+                && map.getType("iceCandidatePoolSize") == ReadableType.Number) {
+            final int v = map.getInt("iceCandidatePoolSize");
+            if (v > 0) {
+                configuration.iceCandidatePoolSize = v;
+            }
+        }
+
+        // tcpCandidatePolicy (non-standard, native WebRTC only)
+        String tcpCandidatePolicy = getMapStrValue(map, "tcpCandidatePolicy");
+        if ("enabled".equals(tcpCandidatePolicy)) {
+            configuration.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.ENABLED;
+        } else if ("disabled".equals(tcpCandidatePolicy)) {
+            configuration.tcpCandidatePolicy = PeerConnection.TcpCandidatePolicy.DISABLED;
+        }
+
+        // continualGatheringPolicy (non-standard, native WebRTC only)
+        String continualGatheringPolicy
+            = getMapStrValue(map, "continualGatheringPolicy");
+        if ("gather_once".equals(continualGatheringPolicy)) {
+            configuration.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_ONCE;
+        } else if ("gather_continually".equals(continualGatheringPolicy)) {
+            configuration.continualGatheringPolicy = PeerConnection.ContinualGatheringPolicy.GATHER_CONTINUALLY;
+        }
+
         return configuration;
     }
 
+    /**
+     * Reads a <tt>String</tt> value from a specific <tt>ReadableMap</tt>.
+     *
+     * @return the <tt>String</tt> value mapped to <tt>key</tt> or
+     * <tt>null</tt> if there is no such key or its value is not a
+     * <tt>String</tt>.
+     */
+    private static String getMapStrValue(ReadableMap map, String key) {
+        return map.hasKey(key) && map.getType(key) == ReadableType.String
+            ? map.getString(key)
+            : null;
+    }
+
     @ReactMethod
-    public void peerConnectionInit(ReadableMap configuration, int id){
+    public void peerConnectionInit(
+            final ReadableMap configuration,
+            final int id) {
+        mExecutor.execute("peerConnectionInit", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionInitAsync(configuration, id);
+            }
+        });
+    }
+
+    private void peerConnectionInitAsync(ReadableMap configuration, int id){
         PeerConnection.RTCConfiguration config = parseRTCConfiguration(configuration);
         PeerConnectionObserver observer = new PeerConnectionObserver(this, id);
-        PeerConnection peerConnection = mFactory.createPeerConnection(config, pcConstraints, observer); 
+        PeerConnection peerConnection = getPeerConnectionFactory().createPeerConnection(config, pcConstraints, observer); 
         observer.setPeerConnection(peerConnection);
         mPeerConnectionObservers.put(id, observer);
+
+        if (mStatsRecordingOptions != null) {
+            observer.startStatsRecording(
+                mStatsRecordingOptions.intervalMs,
+                mStatsRecordingOptions.maxBytes);
+        }
     }
 
     private String getNextStreamUUID() {
@@ -173,7 +464,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
         do {
             uuid = UUID.randomUUID().toString();
-        } while (mMediaStreams.containsKey(uuid));
+        } while (mMediaRegistry.containsStream(uuid));
 
         return uuid;
     }
@@ -183,7 +474,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
         do {
             uuid = UUID.randomUUID().toString();
-        } while (mMediaStreamTracks.containsKey(uuid));
+        } while (mMediaRegistry.containsTrack(uuid));
 
         return uuid;
     }
@@ -288,7 +579,19 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void getUserMedia(ReadableMap constraints,
+    public void getUserMedia(
+            final ReadableMap constraints,
+            final Callback successCallback,
+            final Callback errorCallback) {
+        mExecutor.execute("getUserMedia", new Runnable() {
+            @Override
+            public void run() {
+                getUserMediaAsync(constraints, successCallback, errorCallback);
+            }
+        });
+    }
+
+    private void getUserMediaAsync(ReadableMap constraints,
                              Callback    successCallback,
                              Callback    errorCallback) {
         AudioTrack audioTrack = null;
@@ -322,33 +625,29 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                 Log.i(TAG, "getUserMedia(video): " + videoConstraints
                     + ", sourceId: " + sourceId);
 
-                VideoCapturer videoCapturer
-                    = getVideoCapturerById(sourceId, facingMode);
-                if (videoCapturer != null) {
-                    // FIXME it seems that the factory does not care about
-                    //       given mandatory constraints too much
-                    videoSource = mFactory.createVideoSource(
-                            videoCapturer, videoConstraints);
-
-                    trackId = getNextTrackUUID();
-
-                    mVideoCapturers.put(trackId, videoCapturer);
-
-                    if (videoSource != null) {
-                        videoTrack = mFactory.createVideoTrack(trackId, videoSource);
-                        if (videoTrack != null) {
-                            mMediaStreamTracks.put(trackId, videoTrack);
-
-                            WritableMap trackInfo = Arguments.createMap();
-                            trackInfo.putString("id", trackId);
-                            trackInfo.putString("label", "Video");
-                            trackInfo.putString("kind", videoTrack.kind());
-                            trackInfo.putBoolean("enabled", videoTrack.enabled());
-                            trackInfo.putString(
-                                "readyState", videoTrack.state().toString());
-                            trackInfo.putBoolean("remote", false);
-                            tracks.pushMap(trackInfo);
-                        }
+                trackId = getNextTrackUUID();
+
+                // FIXME it seems that the factory does not care about
+                //       given mandatory constraints too much
+                videoSource
+                    = mVideoCapturerPool.acquire(
+                            trackId,
+                            getVideoCaptureDeviceName(sourceId, facingMode),
+                            videoConstraints);
+                if (videoSource != null) {
+                    videoTrack = getPeerConnectionFactory().createVideoTrack(trackId, videoSource);
+                    if (videoTrack != null) {
+                        mMediaRegistry.addTrack(trackId, videoTrack);
+
+                        WritableMap trackInfo = Arguments.createMap();
+                        trackInfo.putString("id", trackId);
+                        trackInfo.putString("label", "Video");
+                        trackInfo.putString("kind", videoTrack.kind());
+                        trackInfo.putBoolean("enabled", videoTrack.enabled());
+                        trackInfo.putString(
+                            "readyState", videoTrack.state().toString());
+                        trackInfo.putBoolean("remote", false);
+                        tracks.pushMap(trackInfo);
                     }
                 }
 
@@ -358,9 +657,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                     // algorithm specified by
                     // https://www.w3.org/TR/mediacapture-streams/#dom-mediadevices-getusermedia
                     // with respect to distinguishing the various causes of failure.
-                    if (videoCapturer != null) {
-                        removeVideoCapturer(trackId);
-                    }
+                    removeVideoCapturer(trackId);
                     errorCallback.invoke(/* type */ null, "Failed to obtain video");
                     return;
                 }
@@ -391,14 +688,14 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
                 Log.i(TAG, "getUserMedia(audio): " + audioConstraints);
 
                 AudioSource audioSource
-                    = mFactory.createAudioSource(audioConstraints);
+                    = getPeerConnectionFactory().createAudioSource(audioConstraints);
 
                 if (audioSource != null) {
                     String trackId = getNextTrackUUID();
                     audioTrack
-                        = mFactory.createAudioTrack(trackId, audioSource);
+                        = getPeerConnectionFactory().createAudioTrack(trackId, audioSource);
                     if (audioTrack != null) {
-                        mMediaStreamTracks.put(trackId, audioTrack);
+                        mMediaRegistry.addTrack(trackId, audioTrack);
 
                         WritableMap trackInfo = Arguments.createMap();
                         trackInfo.putString("id", trackId);
@@ -441,7 +738,7 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         }
 
         String streamId = getNextStreamUUID();
-        MediaStream mediaStream = mFactory.createLocalMediaStream(streamId);
+        MediaStream mediaStream = getPeerConnectionFactory().createLocalMediaStream(streamId);
         if (mediaStream == null) {
             // FIXME The following does not follow the getUserMedia() algorithm
             // specified by
@@ -459,12 +756,21 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             mediaStream.addTrack(videoTrack);
 
         Log.d(TAG, "mMediaStreamId: " + streamId);
-        mMediaStreams.put(streamId, mediaStream);
+        mMediaRegistry.addStream(streamId, mediaStream, -1);
 
         successCallback.invoke(streamId, tracks);
     }
     @ReactMethod
-    public void mediaStreamTrackGetSources(Callback callback){
+    public void mediaStreamTrackGetSources(final Callback callback) {
+        mExecutor.execute("mediaStreamTrackGetSources", new Runnable() {
+            @Override
+            public void run() {
+                mediaStreamTrackGetSourcesAsync(callback);
+            }
+        });
+    }
+
+    private void mediaStreamTrackGetSourcesAsync(Callback callback){
         WritableArray array = Arguments.createArray();
         String[] names = new String[Camera.getNumberOfCameras()];
 
@@ -487,9 +793,18 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
 
     @ReactMethod
     public void mediaStreamTrackStop(final String id) {
+        mExecutor.execute("mediaStreamTrackStop", new Runnable() {
+            @Override
+            public void run() {
+                mediaStreamTrackStopAsync(id);
+            }
+        });
+    }
+
+    private void mediaStreamTrackStopAsync(final String id) {
         // Is this functionality equivalent to `mediaStreamTrackRelease()` ?
         // if so, we should merge this two and remove track from stream as well.
-        MediaStreamTrack track = mMediaStreamTracks.get(id);
+        MediaStreamTrack track = mMediaRegistry.getTrack(id);
         if (track == null) {
             Log.d(TAG, "mediaStreamTrackStop() track is null");
             return;
@@ -498,14 +813,25 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         if (track.kind().equals("video")) {
             removeVideoCapturer(id);
         }
-        mMediaStreamTracks.remove(id);
+        mMediaRegistry.removeTrack(id);
         // What exactly does `detached` mean in doc?
         // see: https://www.w3.org/TR/mediacapture-streams/#track-detached
     }
 
     @ReactMethod
-    public void mediaStreamTrackSetEnabled(final String id, final boolean enabled) {
-        MediaStreamTrack track = mMediaStreamTracks.get(id);
+    public void mediaStreamTrackSetEnabled(
+            final String id,
+            final boolean enabled) {
+        mExecutor.execute("mediaStreamTrackSetEnabled", new Runnable() {
+            @Override
+            public void run() {
+                mediaStreamTrackSetEnabledAsync(id, enabled);
+            }
+        });
+    }
+
+    private void mediaStreamTrackSetEnabledAsync(final String id, final boolean enabled) {
+        MediaStreamTrack track = mMediaRegistry.getTrack(id);
         if (track == null) {
             Log.d(TAG, "mediaStreamTrackSetEnabled() track is null");
             return;
@@ -516,25 +842,37 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void mediaStreamTrackRelease(final String streamId, final String _trackId) {
-        MediaStream stream = mMediaStreams.get(streamId);
+    public void mediaStreamTrackRelease(
+            final String streamId,
+            final String _trackId) {
+        mExecutor.execute("mediaStreamTrackRelease", new Runnable() {
+            @Override
+            public void run() {
+                mediaStreamTrackReleaseAsync(streamId, _trackId);
+            }
+        });
+    }
+
+    private void mediaStreamTrackReleaseAsync(final String streamId, final String _trackId) {
+        MediaStream stream = mMediaRegistry.getStream(streamId);
         if (stream == null) {
             Log.d(TAG, "mediaStreamTrackRelease() stream is null");
             return;
         }
-        MediaStreamTrack track = mMediaStreamTracks.get(_trackId);
+        MediaStreamTrack track = mMediaRegistry.getTrack(_trackId);
         if (track == null) {
             Log.d(TAG, "mediaStreamTrackRelease() track is null");
             return;
         }
         track.setEnabled(false); // should we do this?
-        mMediaStreamTracks.remove(_trackId);
+        mMediaRegistry.removeTrack(_trackId);
         if (track.kind().equals("audio")) {
             stream.removeTrack((AudioTrack)track);
         } else if (track.kind().equals("video")) {
             stream.removeTrack((VideoTrack)track);
             removeVideoCapturer(_trackId);
         }
+        mMediaRegistry.removeTrackFromStream(streamId, _trackId);
     }
 
     public WritableMap getCameraInfo(int index) {
@@ -557,13 +895,13 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     /**
-     * Creates <tt>VideoCapturer</tt> for given source ID and facing mode.
+     * Determines the name of the camera for given source ID and facing mode.
      *
      * @param id the video source identifier(device id), optional
      * @param facingMode 'user' or 'environment' facing mode, optional
-     * @return <tt>VideoCapturer</tt> instance obtained for given arguments.
+     * @return the name of the camera to capture for given arguments.
      */
-    private VideoCapturer getVideoCapturerById(Integer id, String facingMode) {
+    private String getVideoCaptureDeviceName(Integer id, String facingMode) {
         String name
             = id != null ? CameraEnumerationAndroid.getDeviceName(id) : null;
         if (name == null) {
@@ -577,8 +915,9 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             }
         }
 
-        return VideoCapturerAndroid.create(name, new CameraEventsHandler());
+        return name;
     }
+
     private MediaConstraints defaultConstraints() {
         MediaConstraints constraints = new MediaConstraints();
         // TODO video media
@@ -589,19 +928,42 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     private void removeVideoCapturer(String id) {
-        VideoCapturer videoCapturer = mVideoCapturers.get(id);
-        if (videoCapturer != null) {
-            try {
-                videoCapturer.stopCapture();
-            } catch (InterruptedException e) {
-                Log.e(TAG, "removeVideoCapturer() Failed to stop video capturer");
+        mVideoCapturerPool.release(id);
+    }
+
+    /**
+     * Sets the number of milliseconds for which a camera which is no longer
+     * used by any local video track keeps capturing in anticipation of a new
+     * getUserMedia call for it. Defaults to zero i.e. the camera is stopped
+     * as soon as its last track is stopped.
+     */
+    @ReactMethod
+    public void setVideoCapturerIdleTimeout(final int idleTimeoutMs) {
+        mExecutor.execute("setVideoCapturerIdleTimeout", new Runnable() {
+            @Override
+            public void run() {
+                setVideoCapturerIdleTimeoutAsync(idleTimeoutMs);
             }
-            mVideoCapturers.remove(id);
-        }
+        });
+    }
+
+    private void setVideoCapturerIdleTimeoutAsync(int idleTimeoutMs) {
+        mVideoCapturerPool.setIdleTimeout(idleTimeoutMs);
     }
 
     @ReactMethod
-    public void peerConnectionSetConfiguration(ReadableMap configuration, final int id) {
+    public void peerConnectionSetConfiguration(
+            final ReadableMap configuration,
+            final int id) {
+        mExecutor.execute("peerConnectionSetConfiguration", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionSetConfigurationAsync(configuration, id);
+            }
+        });
+    }
+
+    private void peerConnectionSetConfigurationAsync(ReadableMap configuration, final int id) {
         PeerConnection peerConnection = getPeerConnection(id);
         if (peerConnection == null) {
             Log.d(TAG, "peerConnectionSetConfiguration() peerConnection is null");
@@ -611,32 +973,34 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         peerConnection.setConfiguration(config);
     }
 
-    String onAddStream(MediaStream mediaStream) {
+    String onAddStream(MediaStream mediaStream, int peerConnectionId) {
         String id = mediaStream.label();
         String reactTag = null;
         // The native WebRTC implementation has a special concept of a default
         // MediaStream instance with the label default that the implementation
         // reuses.
         if ("default".equals(id)) {
-            for (Map.Entry<String, MediaStream> e : mMediaStreams.entrySet()) {
-                if (e.getValue().equals(mediaStream)) {
-                    reactTag = e.getKey();
-                    break;
-                }
-            }
+            reactTag = mMediaRegistry.getStreamReactTag(mediaStream);
         }
         if (reactTag == null) {
             reactTag = getNextStreamUUID();
-        }
-        if (!mMediaStreams.containsKey(reactTag)) {
-            mMediaStreams.put(reactTag, mediaStream);
+            mMediaRegistry.addStream(reactTag, mediaStream, peerConnectionId);
         }
         return reactTag;
     }
 
     @ReactMethod
-    public void peerConnectionAddStream(final String streamId, final int id){
-        MediaStream mediaStream = mMediaStreams.get(streamId);
+    public void peerConnectionAddStream(final String streamId, final int id) {
+        mExecutor.execute("peerConnectionAddStream", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionAddStreamAsync(streamId, id);
+            }
+        });
+    }
+
+    private void peerConnectionAddStreamAsync(final String streamId, final int id){
+        MediaStream mediaStream = mMediaRegistry.getStream(streamId);
         if (mediaStream == null) {
             Log.d(TAG, "peerConnectionAddStream() mediaStream is null");
             return;
@@ -655,29 +1019,29 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             return null;
         }
         for (VideoTrack track : mediaStream.videoTracks) {
-            mMediaStreamTracks.remove(track.id());
+            mMediaRegistry.removeTrack(track.id());
             removeVideoCapturer(track.id());
         }
         for (AudioTrack track : mediaStream.audioTracks) {
-            mMediaStreamTracks.remove(track.id());
-        }
-        String reactTag = null;
-        for (Iterator<Map.Entry<String, MediaStream>> i
-                    = mMediaStreams.entrySet().iterator();
-                i.hasNext();) {
-            Map.Entry<String, MediaStream> e = i.next();
-            if (e.getValue().equals(mediaStream)) {
-                reactTag = e.getKey();
-                i.remove();
-                break;
-            }
+            mMediaRegistry.removeTrack(track.id());
         }
-        return reactTag;
+        return mMediaRegistry.removeStream(mediaStream);
     }
 
     @ReactMethod
-    public void peerConnectionRemoveStream(final String streamId, final int id){
-        MediaStream mediaStream = mMediaStreams.get(streamId);
+    public void peerConnectionRemoveStream(
+            final String streamId,
+            final int id) {
+        mExecutor.execute("peerConnectionRemoveStream", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionRemoveStreamAsync(streamId, id);
+            }
+        });
+    }
+
+    private void peerConnectionRemoveStreamAsync(final String streamId, final int id){
+        MediaStream mediaStream = mMediaRegistry.getStream(streamId);
         if (mediaStream == null) {
             Log.d(TAG, "peerConnectionRemoveStream() mediaStream is null");
             return;
@@ -691,7 +1055,18 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void peerConnectionCreateOffer(final int id, final Callback callback) {
+    public void peerConnectionCreateOffer(
+            final int id,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionCreateOffer", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionCreateOfferAsync(id, callback);
+            }
+        });
+    }
+
+    private void peerConnectionCreateOfferAsync(final int id, final Callback callback) {
         PeerConnection peerConnection = getPeerConnection(id);
 
         // MediaConstraints constraints = new MediaConstraints();
@@ -727,7 +1102,18 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void peerConnectionCreateAnswer(final int id, final Callback callback) {
+    public void peerConnectionCreateAnswer(
+            final int id,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionCreateAnswer", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionCreateAnswerAsync(id, callback);
+            }
+        });
+    }
+
+    private void peerConnectionCreateAnswerAsync(final int id, final Callback callback) {
         PeerConnection peerConnection = getPeerConnection(id);
 
         // MediaConstraints constraints = new MediaConstraints();
@@ -766,7 +1152,19 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void peerConnectionSetLocalDescription(ReadableMap sdpMap, final int id, final Callback callback) {
+    public void peerConnectionSetLocalDescription(
+            final ReadableMap sdpMap,
+            final int id,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionSetLocalDescription", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionSetLocalDescriptionAsync(sdpMap, id, callback);
+            }
+        });
+    }
+
+    private void peerConnectionSetLocalDescriptionAsync(ReadableMap sdpMap, final int id, final Callback callback) {
         PeerConnection peerConnection = getPeerConnection(id);
 
         Log.d(TAG, "peerConnectionSetLocalDescription() start");
@@ -802,7 +1200,19 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         Log.d(TAG, "peerConnectionSetLocalDescription() end");
     }
     @ReactMethod
-    public void peerConnectionSetRemoteDescription(final ReadableMap sdpMap, final int id, final Callback callback) {
+    public void peerConnectionSetRemoteDescription(
+            final ReadableMap sdpMap,
+            final int id,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionSetRemoteDescription", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionSetRemoteDescriptionAsync(sdpMap, id, callback);
+            }
+        });
+    }
+
+    private void peerConnectionSetRemoteDescriptionAsync(final ReadableMap sdpMap, final int id, final Callback callback) {
         PeerConnection peerConnection = getPeerConnection(id);
         // final String d = sdpMap.getString("type");
 
@@ -839,7 +1249,19 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         Log.d(TAG, "peerConnectionSetRemoteDescription() end");
     }
     @ReactMethod
-    public void peerConnectionAddICECandidate(ReadableMap candidateMap, final int id, final Callback callback) {
+    public void peerConnectionAddICECandidate(
+            final ReadableMap candidateMap,
+            final int id,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionAddICECandidate", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionAddICECandidateAsync(candidateMap, id, callback);
+            }
+        });
+    }
+
+    private void peerConnectionAddICECandidateAsync(ReadableMap candidateMap, final int id, final Callback callback) {
         boolean result = false;
         PeerConnection peerConnection = getPeerConnection(id);
         Log.d(TAG, "peerConnectionAddICECandidate() start");
@@ -857,56 +1279,607 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
         Log.d(TAG, "peerConnectionAddICECandidate() end");
     }
 
+    /**
+     * Adds multiple remote ICE candidates to a specific
+     * <tt>PeerConnection</tt> in a single React Native bridge crossing.
+     *
+     * @param candidates the <tt>RTCIceCandidate</tt>s (in their JSON form) to
+     * add
+     * @param id the id of the <tt>PeerConnection</tt>
+     * @param callback invoked with an array of <tt>boolean</tt>s which tell,
+     * in the order of <tt>candidates</tt>, whether the candidates were added
+     */
     @ReactMethod
-    public void peerConnectionGetStats(String trackId, int id, Callback cb) {
-        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
-        if (pco == null || pco.getPeerConnection() == null) {
-            Log.d(TAG, "peerConnectionGetStats() peerConnection is null");
-        } else {
-            pco.getStats(trackId, cb);
+    public void peerConnectionAddICECandidates(
+            final ReadableArray candidates,
+            final int id,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionAddICECandidates", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionAddICECandidatesAsync(candidates, id, callback);
+            }
+        });
+    }
+
+    private void peerConnectionAddICECandidatesAsync(ReadableArray candidates, final int id, final Callback callback) {
+        PeerConnection peerConnection = getPeerConnection(id);
+        WritableArray results = Arguments.createArray();
+        final int size = candidates.size();
+        if (peerConnection == null) {
+            Log.d(TAG, "peerConnectionAddICECandidates() peerConnection is null");
+        }
+        for (int i = 0; i < size; i++) {
+            boolean result = false;
+            if (peerConnection != null) {
+                ReadableMap candidateMap = candidates.getMap(i);
+                IceCandidate candidate = new IceCandidate(
+                    candidateMap.getString("sdpMid"),
+                    candidateMap.getInt("sdpMLineIndex"),
+                    candidateMap.getString("candidate")
+                );
+                result = peerConnection.addIceCandidate(candidate);
+            }
+            results.pushBoolean(result);
         }
+        callback.invoke(results);
     }
 
+    /**
+     * Enables or disables the gathering of the local ICE candidates of a
+     * specific <tt>PeerConnection</tt> into batches (per <tt>sdpMid</tt>)
+     * before they are sent to JavaScript.
+     *
+     * @param id the id of the <tt>PeerConnection</tt>
+     * @param delayMs the maximum number of milliseconds for which a local ICE
+     * candidate may be held back; zero disables batching
+     */
     @ReactMethod
-    public void peerConnectionClose(final int id) {
+    public void peerConnectionSetICECandidateBatching(
+            final int id,
+            final int delayMs) {
+        mExecutor.execute("peerConnectionSetICECandidateBatching", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionSetICECandidateBatchingAsync(id, delayMs);
+            }
+        });
+    }
+
+    private void peerConnectionSetICECandidateBatchingAsync(final int id, int delayMs) {
         PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
         if (pco == null || pco.getPeerConnection() == null) {
-            Log.d(TAG, "peerConnectionClose() peerConnection is null");
+            Log.d(TAG, "peerConnectionSetICECandidateBatching() peerConnection is null");
         } else {
-            pco.close();
-            mPeerConnectionObservers.remove(id);
+            pco.setIceCandidateBatching(delayMs);
         }
-
-        resetAudio();
     }
+
     @ReactMethod
-    public void mediaStreamRelease(final String id) {
-        MediaStream mediaStream = mMediaStreams.get(id);
-        if (mediaStream != null) {
-            for (VideoTrack track : mediaStream.videoTracks) {
-                mMediaStreamTracks.remove(track);
-                removeVideoCapturer(track.id());
-            }
-            for (AudioTrack track : mediaStream.audioTracks) {
-                mMediaStreamTracks.remove(track);
+    public void peerConnectionGetStats(
+            final String trackId,
+            final int id,
+            final Callback cb) {
+        mExecutor.execute("peerConnectionGetStats", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionGetStatsAsync(trackId, id, cb);
             }
+        });
+    }
 
-            mMediaStreams.remove(id);
+    private void peerConnectionGetStatsAsync(String trackId, int id, Callback cb) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionGetStats() peerConnection is null");
         } else {
-            Log.d(TAG, "mediaStreamRelease() mediaStream is null");
+            pco.getStats(trackId, cb);
         }
     }
-    private void resetAudio() {
-        AudioManager audioManager = (AudioManager)getReactApplicationContext().getSystemService(Context.AUDIO_SERVICE);
-        audioManager.setSpeakerphoneOn(true);
-        audioManager.setMode(AudioManager.MODE_NORMAL);
-    }
+
+    /**
+     * Gets the statistics of a specific <tt>PeerConnection</tt> as a JSON
+     * object keyed by report id in which numeric and boolean values are typed.
+     * For more details, refer to {@link TypedStatsEncoder}.
+     *
+     * @param trackId the id of the <tt>MediaStreamTrack</tt> to get the
+     * statistics of or an empty <tt>String</tt> for all statistics
+     * @param types the types of the reports to get (e.g. <tt>ssrc</tt>,
+     * <tt>VideoBwe</tt>, <tt>googCandidatePair</tt>) or <tt>null</tt> for
+     * all
+     * @param id the id of the <tt>PeerConnection</tt>
+     * @param cb the <tt>Callback</tt> to invoke with the JSON representation
+     * of the statistics
+     */
     @ReactMethod
-    public void setAudioOutput(String output) {
-        AudioManager audioManager = (AudioManager)getReactApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+    public void peerConnectionGetTypedStats(
+            final String trackId,
+            @Nullable final ReadableArray types,
+            final int id,
+            final Callback cb) {
+        mExecutor.execute("peerConnectionGetTypedStats", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionGetTypedStatsAsync(trackId, types, id, cb);
+            }
+        });
+    }
+
+    private void peerConnectionGetTypedStatsAsync(
+            String trackId,
+            @Nullable ReadableArray types,
+            int id,
+            Callback cb) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionGetTypedStats() peerConnection is null");
+            return;
+        }
+
+        Set<String> typeSet = null;
+        if (types != null) {
+            typeSet = new HashSet<String>();
+            for (int i = 0; i < types.size(); ++i) {
+                typeSet.add(types.getString(i));
+            }
+        }
+        pco.getTypedStats(trackId, typeSet, cb);
+    }
+
+    /**
+     * Subscribes JavaScript to the statistics of a specific
+     * <tt>PeerConnection</tt>: they are sampled natively at a specific interval
+     * and only the values which have changed are sent to JavaScript as
+     * <tt>peerConnectionStatsDelta</tt> events.
+     *
+     * @param id the id of the <tt>PeerConnection</tt>
+     * @param intervalMs the number of milliseconds between two samples
+     */
+    @ReactMethod
+    public void peerConnectionSubscribeStats(
+            final int id,
+            final int intervalMs) {
+        mExecutor.execute("peerConnectionSubscribeStats", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionSubscribeStatsAsync(id, intervalMs);
+            }
+        });
+    }
+
+    private void peerConnectionSubscribeStatsAsync(int id, int intervalMs) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSubscribeStats() peerConnection is null");
+        } else if (intervalMs <= 0) {
+            Log.e(TAG, "peerConnectionSubscribeStats() invalid interval: " + intervalMs);
+        } else {
+            pco.subscribeStats(intervalMs);
+        }
+    }
+
+    @ReactMethod
+    public void peerConnectionUnsubscribeStats(final int id) {
+        mExecutor.execute("peerConnectionUnsubscribeStats", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionUnsubscribeStatsAsync(id);
+            }
+        });
+    }
+
+    private void peerConnectionUnsubscribeStatsAsync(int id) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionUnsubscribeStats() peerConnection is null");
+        } else {
+            pco.unsubscribeStats();
+        }
+    }
+
+    /**
+     * Subscribes JavaScript to call-quality summaries of a specific
+     * <tt>PeerConnection</tt>: its statistics are sampled and aggregated
+     * natively (bitrate, packet loss, RTT, jitter and MOS per SSRC) and a
+     * compact summary is sent to JavaScript as a
+     * <tt>peerConnectionQualitySummary</tt> event after each sample.
+     *
+     * @param id the id of the <tt>PeerConnection</tt>
+     * @param intervalMs the number of milliseconds between two summaries
+     * @param windowMs the number of milliseconds over which the bitrate and
+     * the packet loss are computed or <tt>0</tt> for the default
+     */
+    @ReactMethod
+    public void peerConnectionSubscribeQuality(
+            final int id,
+            final int intervalMs,
+            final int windowMs) {
+        mExecutor.execute("peerConnectionSubscribeQuality", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionSubscribeQualityAsync(id, intervalMs, windowMs);
+            }
+        });
+    }
+
+    private void peerConnectionSubscribeQualityAsync(
+            int id,
+            int intervalMs,
+            int windowMs) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionSubscribeQuality() peerConnection is null");
+        } else if (intervalMs <= 0) {
+            Log.e(TAG, "peerConnectionSubscribeQuality() invalid interval: " + intervalMs);
+        } else {
+            pco.subscribeQuality(
+                intervalMs,
+                windowMs > 0 ? windowMs : CallQualityAggregator.DEFAULT_WINDOW_MS);
+        }
+    }
+
+    @ReactMethod
+    public void peerConnectionUnsubscribeQuality(final int id) {
+        mExecutor.execute("peerConnectionUnsubscribeQuality", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionUnsubscribeQualityAsync(id);
+            }
+        });
+    }
+
+    private void peerConnectionUnsubscribeQualityAsync(int id) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionUnsubscribeQuality() peerConnection is null");
+        } else {
+            pco.unsubscribeQuality();
+        }
+    }
+
+    /**
+     * Starts or stops recording the statistics of every (existing and future)
+     * <tt>PeerConnection</tt> natively into a bounded ring buffer for
+     * post-call diagnostics.
+     *
+     * @param options <tt>null</tt> to stop recording or the options of the
+     * recording: <tt>intervalMs</tt> (the number of milliseconds between two
+     * samples, 1000 by default), <tt>maxBytes</tt> (the cap of the memory used
+     * per <tt>PeerConnection</tt>, 1 MiB by default) and
+     * <tt>exportDirectory</tt> (the directory to export the recording of a
+     * <tt>PeerConnection</tt> to when it is closed, if any)
+     */
+    @ReactMethod
+    public void setStatsRecording(@Nullable final ReadableMap options) {
+        mExecutor.execute("setStatsRecording", new Runnable() {
+            @Override
+            public void run() {
+                setStatsRecordingAsync(options);
+            }
+        });
+    }
+
+    private void setStatsRecordingAsync(@Nullable ReadableMap options) {
+        StatsRecordingOptions recordingOptions = null;
+
+        if (options != null) {
+            recordingOptions = new StatsRecordingOptions();
+            if (options.hasKey("intervalMs")
+                    && options.getType("intervalMs") == ReadableType.Number) {
+                recordingOptions.intervalMs = options.getInt("intervalMs");
+            }
+            if (options.hasKey("maxBytes")
+                    && options.getType("maxBytes") == ReadableType.Number) {
+                recordingOptions.maxBytes = options.getInt("maxBytes");
+            }
+            String exportDirectory = getMapStrValue(options, "exportDirectory");
+            if (exportDirectory != null) {
+                recordingOptions.exportDirectory = new File(exportDirectory);
+            }
+            if (recordingOptions.intervalMs <= 0
+                    || recordingOptions.maxBytes <= 0) {
+                Log.e(TAG, "setStatsRecording() invalid options: " + options);
+                return;
+            }
+        }
+        mStatsRecordingOptions = recordingOptions;
+
+        for (int i = 0, size = mPeerConnectionObservers.size(); i < size; ++i) {
+            PeerConnectionObserver pco = mPeerConnectionObservers.valueAt(i);
+            if (pco.getPeerConnection() == null) {
+                continue;
+            }
+            if (recordingOptions == null) {
+                pco.stopStatsRecording();
+            } else {
+                pco.startStatsRecording(
+                    recordingOptions.intervalMs,
+                    recordingOptions.maxBytes);
+            }
+        }
+    }
+
+    /**
+     * Exports the statistics recorded for a specific <tt>PeerConnection</tt>
+     * (see {@link #setStatsRecording}) to a specific file as JSON lines, one
+     * per sample.
+     *
+     * @param id the id of the <tt>PeerConnection</tt>
+     * @param path the path of the file to export to
+     * @param callback the {@code Callback} to invoke with <tt>true</tt> and
+     * the number of exported samples or with <tt>false</tt> and an error
+     * message
+     */
+    @ReactMethod
+    public void peerConnectionExportStats(
+            final int id,
+            final String path,
+            final Callback callback) {
+        mExecutor.execute("peerConnectionExportStats", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionExportStatsAsync(id, path, callback);
+            }
+        });
+    }
+
+    private void peerConnectionExportStatsAsync(
+            int id,
+            String path,
+            Callback callback) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionExportStats() peerConnection is null");
+            callback.invoke(false, "peerConnection is null");
+        } else if (!pco.exportStats(new File(path), callback)) {
+            callback.invoke(false, "stats are not being recorded");
+        }
+    }
+
+    @ReactMethod
+    public void peerConnectionClose(final int id) {
+        mExecutor.execute("peerConnectionClose", new Runnable() {
+            @Override
+            public void run() {
+                peerConnectionCloseAsync(id);
+            }
+        });
+    }
+
+    private void peerConnectionCloseAsync(final int id) {
+        PeerConnectionObserver pco = mPeerConnectionObservers.get(id);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "peerConnectionClose() peerConnection is null");
+        } else {
+            if (mStatsRecordingOptions != null
+                    && mStatsRecordingOptions.exportDirectory != null) {
+                pco.exportStats(
+                    new File(
+                        mStatsRecordingOptions.exportDirectory,
+                        "stats-" + id + "-" + System.currentTimeMillis()
+                            + ".jsonl"),
+                    null);
+            }
+            pco.close();
+            mPeerConnectionObservers.remove(id);
+        }
+
+        resetAudio();
+    }
+    /**
+     * Takes a census of the native objects of this module which are alive:
+     * the <tt>PeerConnection</tt>s, the <tt>MediaStream</tt>s, the local
+     * <tt>MediaStreamTrack</tt>s, the cameras (i.e. the
+     * <tt>VideoCapturer</tt>s), the <tt>DataChannel</tt>s and the video
+     * renderers of the <tt>RTCView</tt>s. Every object is described with its
+     * age in milliseconds and whether it looks leaked e.g. a remote stream
+     * which has outlived the <tt>PeerConnection</tt> which has received it or
+     * a renderer of a track which no stream owns any longer.
+     *
+     * @param callback invoked with an object with <tt>peerConnections</tt>,
+     * <tt>mediaStreams</tt>, <tt>mediaStreamTracks</tt>,
+     * <tt>videoCapturers</tt>, <tt>dataChannels</tt> and
+     * <tt>videoRenderers</tt> arrays
+     */
+    @ReactMethod
+    public void getResourceCensus(final Callback callback) {
+        // The renderers and the views which host them belong to the UI thread.
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                final List<VideoRendererDescription> videoRenderers
+                    = describeVideoRenderers();
+
+                mExecutor.execute("getResourceCensus", new Runnable() {
+                    @Override
+                    public void run() {
+                        getResourceCensusAsync(videoRenderers, callback);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Describes the video renderers of the <tt>RTCView</tt>s for the purposes
+     * of {@link #getResourceCensus}. Invoked on the UI thread.
+     */
+    private static List<VideoRendererDescription> describeVideoRenderers() {
+        List<VideoRendererDescription> descriptions
+            = new ArrayList<VideoRendererDescription>();
+
+        for (SurfaceViewRenderer renderer : RenderThreadPool.getRenderers()) {
+            VideoRendererDescription description
+                = new VideoRendererDescription();
+            Object parent = renderer.getParent();
+
+            if (parent instanceof WebRTCView) {
+                description.reactTag = ((WebRTCView) parent).getId();
+                description.trackId = ((WebRTCView) parent).getVideoTrackId();
+            }
+            description.acquisitionTime
+                = RenderThreadPool.getAcquisitionTime(renderer);
+            descriptions.add(description);
+        }
+        return descriptions;
+    }
+
+    private void getResourceCensusAsync(
+            List<VideoRendererDescription> videoRendererDescriptions,
+            Callback callback) {
+        WritableMap census = Arguments.createMap();
+        WritableArray peerConnections = Arguments.createArray();
+        WritableArray dataChannels = Arguments.createArray();
+        Set<Integer> livePeerConnectionIds = new HashSet<Integer>();
+
+        for (int i = 0, size = mPeerConnectionObservers.size(); i < size; ++i) {
+            PeerConnectionObserver pco = mPeerConnectionObservers.valueAt(i);
+            if (pco.getPeerConnection() != null) {
+                pco.describe(peerConnections, dataChannels);
+                livePeerConnectionIds.add(mPeerConnectionObservers.keyAt(i));
+            }
+        }
+        census.putArray("peerConnections", peerConnections);
+        mMediaRegistry.describe(livePeerConnectionIds, census);
+        census.putArray(
+            "videoCapturers",
+            mVideoCapturerPool.describe(mMediaRegistry));
+        census.putArray("dataChannels", dataChannels);
+
+        WritableArray videoRenderers = Arguments.createArray();
+        long now = SystemClock.elapsedRealtime();
+        for (VideoRendererDescription description : videoRendererDescriptions) {
+            WritableMap params = Arguments.createMap();
+            String trackId = description.trackId;
+
+            if (description.reactTag != -1) {
+                params.putInt("reactTag", description.reactTag);
+            }
+            if (trackId != null) {
+                params.putString("trackId", trackId);
+            }
+            if (description.acquisitionTime != -1) {
+                params.putDouble("age", now - description.acquisitionTime);
+            }
+            // Whether the rendered track is still owned by a stream is known
+            // to the registry (the native track may have been disposed of).
+            params.putBoolean(
+                "leaked",
+                trackId != null
+                    && mMediaRegistry.getTrackStreamReactTag(trackId) == null);
+            videoRenderers.pushMap(params);
+        }
+        census.putArray("videoRenderers", videoRenderers);
+
+        callback.invoke(census);
+    }
+
+    @ReactMethod
+    public void mediaStreamRelease(final String id) {
+        mExecutor.execute("mediaStreamRelease", new Runnable() {
+            @Override
+            public void run() {
+                mediaStreamReleaseAsync(id);
+            }
+        });
+    }
+
+    private void mediaStreamReleaseAsync(final String id) {
+        MediaStream mediaStream = mMediaRegistry.removeStream(id);
+        if (mediaStream != null) {
+            for (VideoTrack track : mediaStream.videoTracks) {
+                mMediaRegistry.removeTrack(track.id());
+                removeVideoCapturer(track.id());
+            }
+            for (AudioTrack track : mediaStream.audioTracks) {
+                mMediaRegistry.removeTrack(track.id());
+            }
+        } else {
+            Log.d(TAG, "mediaStreamRelease() mediaStream is null");
+        }
+    }
+    private void resetAudio() {
+        AudioManager audioManager = (AudioManager)getReactApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+        audioManager.setSpeakerphoneOn(true);
+        audioManager.setMode(AudioManager.MODE_NORMAL);
+    }
+    @ReactMethod
+    public void setAudioOutput(final String output) {
+        mExecutor.execute("setAudioOutput", new Runnable() {
+            @Override
+            public void run() {
+                setAudioOutputAsync(output);
+            }
+        });
+    }
+
+    private void setAudioOutputAsync(String output) {
+        AudioManager audioManager = (AudioManager)getReactApplicationContext().getSystemService(Context.AUDIO_SERVICE);
         audioManager.setMode(AudioManager.MODE_IN_CALL);
         audioManager.setSpeakerphoneOn(output.equals("speaker"));
     }
+    /**
+     * Sets the maximum number of threads on which the video of all
+     * <tt>RTCView</tt>s is rendered. Takes effect for the <tt>RTCView</tt>s
+     * which start rendering afterwards.
+     *
+     * @param count the maximum number of render threads
+     */
+    @ReactMethod
+    public void setRenderThreadCount(int count) {
+        RenderThreadPool.setMaxThreadCount(count);
+    }
+
+    /**
+     * Reports the rendering statistics of every <tt>RTCView</tt> which is
+     * currently rendering video.
+     *
+     * @param callback invoked with an array of objects which describe the
+     * rendering statistics of one <tt>RTCView</tt> each (identified by its
+     * <tt>reactTag</tt>)
+     */
+    @ReactMethod
+    public void getRenderStatistics(final Callback callback) {
+        // The renderers and the views which host them belong to the UI thread.
+        UiThreadUtil.runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                callback.invoke(describeRenderStatistics());
+            }
+        });
+    }
+
+    /**
+     * Describes the rendering statistics of the <tt>RTCView</tt>s for the
+     * purposes of {@link #getRenderStatistics}. Invoked on the UI thread.
+     */
+    private static WritableArray describeRenderStatistics() {
+        WritableArray array = Arguments.createArray();
+
+        for (SurfaceViewRenderer renderer : RenderThreadPool.getRenderers()) {
+            SurfaceViewRenderer.Statistics statistics
+                = renderer.getStatistics();
+            WritableMap params = Arguments.createMap();
+            Object parent = renderer.getParent();
+
+            if (parent instanceof View) {
+                params.putInt("reactTag", ((View) parent).getId());
+            }
+            params.putString("renderThread", statistics.renderThreadName);
+            params.putInt("framesReceived", statistics.framesReceived);
+            params.putInt("framesDropped", statistics.framesDropped);
+            params.putInt("framesRendered", statistics.framesRendered);
+            params.putDouble(
+                "averageRenderTimeUs",
+                statistics.framesRendered == 0
+                    ? 0
+                    : statistics.renderTimeNs
+                        / (1000.0 * statistics.framesRendered));
+            array.pushMap(params);
+        }
+        return array;
+    }
+
     @ReactMethod
     public void setKeepScreenOn(final boolean isOn) {
         UiThreadUtil.runOnUiThread(new Runnable() {
@@ -934,7 +1907,19 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void createDataChannel(final int peerConnectionId, String label, ReadableMap config) {
+    public void createDataChannel(
+            final int peerConnectionId,
+            final String label,
+            final ReadableMap config) {
+        mExecutor.execute("createDataChannel", new Runnable() {
+            @Override
+            public void run() {
+                createDataChannelAsync(peerConnectionId, label, config);
+            }
+        });
+    }
+
+    private void createDataChannelAsync(final int peerConnectionId, String label, ReadableMap config) {
         // Forward to PeerConnectionObserver which deals with DataChannels
         // because DataChannel is owned by PeerConnection.
         PeerConnectionObserver pco
@@ -947,7 +1932,24 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void dataChannelSend(int peerConnectionId, int dataChannelId, String data, String type) {
+    public void dataChannelSend(
+            final int peerConnectionId,
+            final int dataChannelId,
+            final String data,
+            final String type) {
+        mExecutor.execute("dataChannelSend", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelSendAsync(
+                    peerConnectionId,
+                    dataChannelId,
+                    data,
+                    type);
+            }
+        });
+    }
+
+    private void dataChannelSendAsync(int peerConnectionId, int dataChannelId, String data, String type) {
         // Forward to PeerConnectionObserver which deals with DataChannels
         // because DataChannel is owned by PeerConnection.
         PeerConnectionObserver pco
@@ -960,7 +1962,188 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
     }
 
     @ReactMethod
-    public void dataChannelClose(int peerConnectionId, int dataChannelId) {
+    public void dataChannelSetBufferedAmountLowThreshold(
+            final int peerConnectionId,
+            final int dataChannelId,
+            final double threshold) {
+        mExecutor.execute("dataChannelSetBufferedAmountLowThreshold", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelSetBufferedAmountLowThresholdAsync(
+                    peerConnectionId,
+                    dataChannelId,
+                    threshold);
+            }
+        });
+    }
+
+    private void dataChannelSetBufferedAmountLowThresholdAsync(
+            int peerConnectionId,
+            int dataChannelId,
+            double threshold) {
+        // Forward to PeerConnectionObserver which deals with DataChannels
+        // because DataChannel is owned by PeerConnection.
+        PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG,
+                "dataChannelSetBufferedAmountLowThreshold() peerConnection is null");
+        } else {
+            pco.dataChannelSetBufferedAmountLowThreshold(
+                dataChannelId, (long) threshold);
+        }
+    }
+
+    @ReactMethod
+    public void dataChannelSetFraming(
+            final int peerConnectionId,
+            final int dataChannelId,
+            @Nullable final ReadableMap options) {
+        mExecutor.execute("dataChannelSetFraming", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelSetFramingAsync(
+                    peerConnectionId,
+                    dataChannelId,
+                    options);
+            }
+        });
+    }
+
+    private void dataChannelSetFramingAsync(
+            int peerConnectionId,
+            int dataChannelId,
+            @Nullable ReadableMap options) {
+        // Forward to PeerConnectionObserver which deals with DataChannels
+        // because DataChannel is owned by PeerConnection.
+        PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "dataChannelSetFraming() peerConnection is null");
+        } else {
+            pco.dataChannelSetFraming(dataChannelId, options);
+        }
+    }
+
+    @ReactMethod
+    public void dataChannelSendFile(
+            final int peerConnectionId,
+            final int dataChannelId,
+            final String path,
+            @Nullable final ReadableMap options) {
+        mExecutor.execute("dataChannelSendFile", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelSendFileAsync(
+                    peerConnectionId,
+                    dataChannelId,
+                    path,
+                    options);
+            }
+        });
+    }
+
+    private void dataChannelSendFileAsync(
+            int peerConnectionId,
+            int dataChannelId,
+            String path,
+            @Nullable ReadableMap options) {
+        // Forward to PeerConnectionObserver which deals with DataChannels
+        // because DataChannel is owned by PeerConnection.
+        PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "dataChannelSendFile() peerConnection is null");
+        } else {
+            pco.dataChannelSendFile(dataChannelId, path, options);
+        }
+    }
+
+    @ReactMethod
+    public void dataChannelReceiveToFile(
+            final int peerConnectionId,
+            final int dataChannelId,
+            @Nullable final String path,
+            @Nullable final ReadableMap options) {
+        mExecutor.execute("dataChannelReceiveToFile", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelReceiveToFileAsync(
+                    peerConnectionId,
+                    dataChannelId,
+                    path,
+                    options);
+            }
+        });
+    }
+
+    private void dataChannelReceiveToFileAsync(
+            int peerConnectionId,
+            int dataChannelId,
+            @Nullable String path,
+            @Nullable ReadableMap options) {
+        // Forward to PeerConnectionObserver which deals with DataChannels
+        // because DataChannel is owned by PeerConnection.
+        PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "dataChannelReceiveToFile() peerConnection is null");
+        } else {
+            pco.dataChannelReceiveToFile(dataChannelId, path, options);
+        }
+    }
+
+    /**
+     * Gets the counters (messages and bytes sent and received) and the latency
+     * histograms (in microseconds) of a specific <tt>DataChannel</tt>. For
+     * more details, refer to {@link DataChannelMetrics}.
+     */
+    @ReactMethod
+    public void dataChannelGetMetrics(
+            final int peerConnectionId,
+            final int dataChannelId,
+            final Callback callback) {
+        mExecutor.execute("dataChannelGetMetrics", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelGetMetricsAsync(
+                    peerConnectionId,
+                    dataChannelId,
+                    callback);
+            }
+        });
+    }
+
+    private void dataChannelGetMetricsAsync(
+            int peerConnectionId,
+            int dataChannelId,
+            Callback callback) {
+        // Forward to PeerConnectionObserver which deals with DataChannels
+        // because DataChannel is owned by PeerConnection.
+        PeerConnectionObserver pco
+            = mPeerConnectionObservers.get(peerConnectionId);
+        WritableMap metrics = null;
+        if (pco == null || pco.getPeerConnection() == null) {
+            Log.d(TAG, "dataChannelGetMetrics() peerConnection is null");
+        } else {
+            metrics = pco.dataChannelGetMetrics(dataChannelId);
+        }
+        callback.invoke(metrics);
+    }
+
+    @ReactMethod
+    public void dataChannelClose(
+            final int peerConnectionId,
+            final int dataChannelId) {
+        mExecutor.execute("dataChannelClose", new Runnable() {
+            @Override
+            public void run() {
+                dataChannelCloseAsync(peerConnectionId, dataChannelId);
+            }
+        });
+    }
+
+    private void dataChannelCloseAsync(int peerConnectionId, int dataChannelId) {
         // Forward to PeerConnectionObserver which deals with DataChannels
         // because DataChannel is owned by PeerConnection.
         PeerConnectionObserver pco
@@ -971,4 +2154,43 @@ public class WebRTCModule extends ReactContextBaseJavaModule {
             pco.dataChannelClose(dataChannelId);
         }
     }
+
+    /**
+     * The description of a video renderer taken on the UI thread for the
+     * purposes of {@link #getResourceCensus}.
+     */
+    private static class VideoRendererDescription {
+        /**
+         * The time the renderer acquired its render thread in milliseconds
+         * (since boot) or <tt>-1</tt>.
+         */
+        long acquisitionTime = -1;
+
+        /**
+         * The reactTag of the <tt>RTCView</tt> which hosts the renderer or
+         * <tt>-1</tt>.
+         */
+        int reactTag = -1;
+
+        /**
+         * The id of the rendered <tt>VideoTrack</tt> or <tt>null</tt>.
+         */
+        String trackId;
+    }
+
+    /**
+     * The options of the recording of the statistics of the
+     * <tt>PeerConnection</tt>s (see {@link #setStatsRecording}).
+     */
+    private static class StatsRecordingOptions {
+        /**
+         * The directory to export the recording of a <tt>PeerConnection</tt>
+         * to when it is closed or <tt>null</tt>.
+         */
+        File exportDirectory;
+
+        int intervalMs = 1000;
+
+        int maxBytes = StatsRecorder.DEFAULT_MAX_BYTES;
+    }
 }
@@ -149,6 +149,12 @@ public class WebRTCView extends ViewGroup {
      */
     private VideoTrack videoTrack;
 
+    /**
+     * The id of {@link #videoTrack}, if any. Read when the track is set so that
+     * it remains available after the track has been disposed of.
+     */
+    private String videoTrackId;
+
     public WebRTCView(Context context) {
         super(context);
 
@@ -173,6 +179,18 @@ public class WebRTCView extends ViewGroup {
         return surfaceViewRenderer;
     }
 
+    /**
+     * Gets the id of the {@code VideoTrack}, if any, rendered by this
+     * {@code WebRTCView}. Unlike {@code VideoTrack.id()}, may be invoked after
+     * the {@code VideoTrack} has been disposed of.
+     *
+     * @return The id of the {@code VideoTrack}, if any, rendered by this
+     * {@code WebRTCView}.
+     */
+    String getVideoTrackId() {
+        return videoTrackId;
+    }
+
     /**
      * If this <tt>View</tt> has {@link View#isInLayout()}, invokes it and
      * returns its return value; otherwise, returns <tt>false</tt> like
@@ -465,6 +483,7 @@ public class WebRTCView extends ViewGroup {
             }
 
             this.videoTrack = videoTrack;
+            videoTrackId = videoTrack == null ? null : videoTrack.id();
 
             if (videoTrack != null) {
                 tryAddRendererToVideoTrack();
@@ -506,7 +525,12 @@ public class WebRTCView extends ViewGroup {
                 && ViewCompat.isAttachedToWindow(this)) {
             SurfaceViewRenderer surfaceViewRenderer = getSurfaceViewRenderer();
 
-            surfaceViewRenderer.init(/* sharedContext */ null, rendererEvents);
+            // Share the root EGLContext (rather than create an unrelated one
+            // per view) so that textures (e.g. decoded video frames) can be
+            // rendered by any view.
+            surfaceViewRenderer.init(
+                    EglUtils.getRootEglBaseContext(),
+                    rendererEvents);
 
             videoRenderer = new VideoRenderer(surfaceViewRenderer);
             videoTrack.addRenderer(videoRenderer);
@@ -0,0 +1,66 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Random;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the Base64 encoding of a received binary message of a
+ * <tt>DataChannel</tt> out of the direct <tt>ByteBuffer</tt> it is received
+ * in and the decoding of a binary message to be sent into a reused
+ * <tt>byte</tt> array against the JDK Base64 (which is not available on
+ * Android before API level 26) on intermediate <tt>byte</tt> arrays.
+ */
+@State(Scope.Thread)
+public class Base64UtilBenchmark {
+    @Param({ "64", "16384" })
+    public int length;
+
+    private byte[] bytes;
+
+    private ByteBuffer data;
+
+    private String encoded;
+
+    @Setup
+    public void setUp() {
+        byte[] b = new byte[length];
+
+        new Random(length).nextBytes(b);
+        data = ByteBuffer.allocateDirect(length);
+        data.put(b);
+        data.flip();
+        encoded = Base64.getEncoder().encodeToString(b);
+        bytes = new byte[Base64Util.decodedLength(encoded)];
+    }
+
+    @Benchmark
+    public String encode() {
+        return Base64Util.encode(data);
+    }
+
+    @Benchmark
+    public String jdkEncode() {
+        byte[] b = new byte[data.remaining()];
+
+        data.duplicate().get(b);
+        return Base64.getEncoder().encodeToString(b);
+    }
+
+    @Benchmark
+    public byte[] decode() {
+        Base64Util.decode(encoded, bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] jdkDecode() {
+        return Base64.getDecoder().decode(encoded);
+    }
+}
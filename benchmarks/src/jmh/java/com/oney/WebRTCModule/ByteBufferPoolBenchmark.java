@@ -0,0 +1,32 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the acquisition and the release of a pooled <tt>ByteBuffer</tt>
+ * (e.g. for a binary data channel message) against the allocation of a new
+ * one.
+ */
+@State(Scope.Thread)
+public class ByteBufferPoolBenchmark {
+    @Param({ "1024", "65536" })
+    public int capacity;
+
+    @Benchmark
+    public ByteBuffer acquireRelease() {
+        ByteBuffer buffer = ByteBufferPool.acquire(capacity);
+
+        ByteBufferPool.release(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer allocate() {
+        return ByteBuffer.allocate(capacity);
+    }
+}
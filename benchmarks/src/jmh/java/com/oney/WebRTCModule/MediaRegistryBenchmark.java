@@ -0,0 +1,128 @@
+package com.oney.WebRTCModule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.webrtc.AudioTrack;
+import org.webrtc.MediaStream;
+import org.webrtc.VideoTrack;
+
+/**
+ * Measures the registration, the unregistration and the reverse lookups of
+ * <tt>MediaStream</tt>s in a <tt>MediaRegistry</tt> which holds a large
+ * number of them (e.g. a long-running SFU client which has received many
+ * remote streams).
+ */
+@State(Scope.Thread)
+public class MediaRegistryBenchmark {
+    @Param({ "1000" })
+    public int streamCount;
+
+    private int index;
+
+    private MediaRegistry registry;
+
+    private String[] reactTags;
+
+    private MediaStream[] streams;
+
+    private String[] trackIds;
+
+    @Setup
+    public void setUp() {
+        registry = new MediaRegistry();
+        reactTags = new String[streamCount];
+        streams = new MediaStream[streamCount];
+        trackIds = new String[streamCount];
+        for (int i = 0; i < streamCount; ++i) {
+            MediaStream stream = new MediaStream(0);
+
+            reactTags[i] = "stream-" + i;
+            trackIds[i] = "audio-" + i;
+            stream.audioTracks.add(new FakeAudioTrack(trackIds[i]));
+            stream.videoTracks.add(new FakeVideoTrack("video-" + i));
+            streams[i] = stream;
+            registry.addStream(reactTags[i], stream, i % 4);
+        }
+    }
+
+    private int nextIndex() {
+        int i = index;
+
+        index = (i + 1) % streamCount;
+        return i;
+    }
+
+    /**
+     * Unregisters a stream by its native instance (as when a remote stream is
+     * removed by the signaling thread) and registers it again.
+     */
+    @Benchmark
+    public String removeAddStream() {
+        int i = nextIndex();
+        String reactTag = registry.removeStream(streams[i]);
+
+        registry.addStream(reactTags[i], streams[i], i % 4);
+        return reactTag;
+    }
+
+    /**
+     * Unregisters a stream by its reactTag (as when JavaScript releases it)
+     * and registers it again.
+     */
+    @Benchmark
+    public MediaStream removeAddStreamByReactTag() {
+        int i = nextIndex();
+        MediaStream stream = registry.removeStream(reactTags[i]);
+
+        registry.addStream(reactTags[i], streams[i], i % 4);
+        return stream;
+    }
+
+    @Benchmark
+    public String getStreamReactTag() {
+        return registry.getStreamReactTag(streams[nextIndex()]);
+    }
+
+    @Benchmark
+    public String getTrackStreamReactTag() {
+        return registry.getTrackStreamReactTag(trackIds[nextIndex()]);
+    }
+
+    /**
+     * An <tt>AudioTrack</tt> which is not backed by a native track.
+     */
+    private static class FakeAudioTrack extends AudioTrack {
+        private final String id;
+
+        FakeAudioTrack(String id) {
+            super(0);
+            this.id = id;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+    }
+
+    /**
+     * A <tt>VideoTrack</tt> which is not backed by a native track.
+     */
+    private static class FakeVideoTrack extends VideoTrack {
+        private final String id;
+
+        FakeVideoTrack(String id) {
+            super(0);
+            this.id = id;
+        }
+
+        @Override
+        public String id() {
+            return id;
+        }
+    }
+}
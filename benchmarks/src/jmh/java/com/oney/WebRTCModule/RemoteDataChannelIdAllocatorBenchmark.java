@@ -0,0 +1,54 @@
+package com.oney.WebRTCModule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the allocation of the ids of remotely-opened
+ * <tt>DataChannel</tt>s while a specific number of them are open (e.g. a
+ * peer which opens and closes a data channel per file transfer).
+ */
+@State(Scope.Thread)
+public class RemoteDataChannelIdAllocatorBenchmark {
+    /**
+     * The number of remotely-opened <tt>DataChannel</tt>s which are open.
+     */
+    @Param({ "16", "1024" })
+    public int openCount;
+
+    private RemoteDataChannelIdAllocator allocator;
+
+    /**
+     * Starts every iteration afresh so that {@link #allocate()} does not
+     * exhaust the id space.
+     */
+    @Setup(Level.Iteration)
+    public void setUp() {
+        allocator = new RemoteDataChannelIdAllocator();
+        for (int i = 0; i < openCount; ++i) {
+            allocator.allocate();
+        }
+    }
+
+    /**
+     * Allocates a never-allocated id.
+     */
+    @Benchmark
+    public int allocate() {
+        return allocator.allocate();
+    }
+
+    /**
+     * Closes a <tt>DataChannel</tt> and opens another one which reuses its
+     * id.
+     */
+    @Benchmark
+    public int releaseAllocate() {
+        allocator.release(RemoteDataChannelIdAllocator.FIRST_ID);
+        return allocator.allocate();
+    }
+}
@@ -0,0 +1,41 @@
+package com.oney.WebRTCModule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Measures the encoding of consecutive samples of statistics as deltas
+ * (i.e. the work done for <tt>RTCPeerConnection.subscribeStats</tt> on every
+ * sample).
+ */
+@State(Scope.Thread)
+public class StatsDeltaEncoderBenchmark {
+    @Param({ "5", "30" })
+    public int reportCount;
+
+    private int index;
+
+    private StatsDeltaEncoder encoder;
+
+    private StatsReport[][] samples;
+
+    @Setup
+    public void setUp() {
+        samples = StatsSamples.generate(16, reportCount, 30, 8);
+        encoder = new StatsDeltaEncoder();
+        encoder.encode(samples[samples.length - 1]);
+    }
+
+    @Benchmark
+    public String encode() {
+        StatsReport[] sample = samples[index];
+
+        index = (index + 1) % samples.length;
+        return encoder.encode(sample);
+    }
+}
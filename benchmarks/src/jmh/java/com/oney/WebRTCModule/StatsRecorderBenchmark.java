@@ -0,0 +1,42 @@
+package com.oney.WebRTCModule;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Measures the recording of a sample of statistics into the bounded ring
+ * buffer of a <tt>StatsRecorder</tt> (i.e. the work done on every sample
+ * while stats recording is enabled). The recorder is full in the steady
+ * state so the trimming of the oldest samples is included.
+ */
+@State(Scope.Thread)
+public class StatsRecorderBenchmark {
+    @Param({ "5", "30" })
+    public int reportCount;
+
+    private int index;
+
+    private StatsRecorder recorder;
+
+    private StatsReport[][] samples;
+
+    @Setup
+    public void setUp() {
+        samples = StatsSamples.generate(16, reportCount, 30, 8);
+        // The sampling is driven by the benchmark rather than a Handler.
+        recorder = new StatsRecorder(null, null, 1000, 64 * 1024);
+    }
+
+    @Benchmark
+    public void onStatsSampled() {
+        StatsReport[] sample = samples[index];
+
+        index = (index + 1) % samples.length;
+        recorder.onStatsSampled(sample);
+    }
+}
@@ -0,0 +1,57 @@
+package com.oney.WebRTCModule;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Generates consecutive samples of <tt>StatsReport</tt>s which resemble the
+ * ones of a call: most values are static (ids, codecs, addresses) and some
+ * are counters which change with every sample.
+ */
+final class StatsSamples {
+    private StatsSamples() {
+    }
+
+    /**
+     * Generates a specific number of consecutive samples.
+     *
+     * @param sampleCount the number of samples to generate
+     * @param reportCount the number of reports per sample
+     * @param valueCount the number of values per report
+     * @param counterCount the number of values per report which change with
+     * every sample
+     */
+    static StatsReport[][] generate(
+            int sampleCount,
+            int reportCount,
+            int valueCount,
+            int counterCount) {
+        StatsReport[][] samples = new StatsReport[sampleCount][reportCount];
+
+        for (int s = 0; s < sampleCount; ++s) {
+            double timestamp = 1500000000000.0 + 1000.0 * s;
+
+            for (int r = 0; r < reportCount; ++r) {
+                StatsReport.Value[] values = new StatsReport.Value[valueCount];
+
+                for (int v = 0; v < valueCount; ++v) {
+                    String value;
+                    if (v < counterCount) {
+                        value = Long.toString((long) (v + 1) * 1237 * (s + 1));
+                    } else if (v % 2 == 0) {
+                        value = "static-value-" + r + "-" + v;
+                    } else {
+                        value = Integer.toString(r * 100 + v);
+                    }
+                    values[v] = new StatsReport.Value("googValue" + v, value);
+                }
+                samples[s][r]
+                    = new StatsReport(
+                        "ssrc_" + (1000000 + r) + "_send",
+                        r % 3 == 0 ? "ssrc" : "googCandidatePair",
+                        timestamp,
+                        values);
+            }
+        }
+        return samples;
+    }
+}
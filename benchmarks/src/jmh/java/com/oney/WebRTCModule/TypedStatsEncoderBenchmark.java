@@ -0,0 +1,45 @@
+package com.oney.WebRTCModule;
+
+import java.util.Collections;
+import java.util.Set;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import org.webrtc.StatsReport;
+
+/**
+ * Measures the encoding of a sample of statistics as JSON with typed values
+ * (i.e. the work done for <tt>RTCPeerConnection.getTypedStats</tt>).
+ */
+@State(Scope.Thread)
+public class TypedStatsEncoderBenchmark {
+    @Param({ "5", "30" })
+    public int reportCount;
+
+    private final StringBuilder s = new StringBuilder();
+
+    private StatsReport[] sample;
+
+    private final Set<String> types = Collections.singleton("ssrc");
+
+    @Setup
+    public void setUp() {
+        sample = StatsSamples.generate(1, reportCount, 30, 8)[0];
+    }
+
+    @Benchmark
+    public int encodeAll() {
+        s.setLength(0);
+        return TypedStatsEncoder.encode(sample, null, s).length();
+    }
+
+    @Benchmark
+    public int encodeType() {
+        s.setLength(0);
+        return TypedStatsEncoder.encode(sample, types, s).length();
+    }
+}
@@ -0,0 +1,64 @@
+package com.oney.WebRTCModule;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures the decoding of a received text message of a
+ * <tt>DataChannel</tt> out of the direct <tt>ByteBuffer</tt> it is received
+ * in against copying it into a <tt>byte</tt> array and decoding the latter.
+ */
+@State(Scope.Thread)
+public class UTF8DecoderBenchmark {
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    @Param({ "64", "4096" })
+    public int length;
+
+    /**
+     * Whether the text contains non-ASCII characters.
+     */
+    @Param({ "false", "true" })
+    public boolean multilingual;
+
+    private ByteBuffer data;
+
+    private final UTF8Decoder decoder = new UTF8Decoder();
+
+    @Setup
+    public void setUp() {
+        String unit
+            = multilingual ? "Gr\u00fc\u00dfe, \u4e16\u754c! " : "Hello, world! ";
+        StringBuilder s = new StringBuilder();
+
+        while (s.length() < length) {
+            s.append(unit);
+        }
+        s.setLength(length);
+
+        byte[] bytes = s.toString().getBytes(UTF_8);
+
+        data = ByteBuffer.allocateDirect(bytes.length);
+        data.put(bytes);
+        data.flip();
+    }
+
+    @Benchmark
+    public String decode() {
+        return decoder.decode(data);
+    }
+
+    @Benchmark
+    public String copyAndDecode() {
+        byte[] bytes = new byte[data.remaining()];
+
+        data.duplicate().get(bytes);
+        return new String(bytes, UTF_8);
+    }
+}
@@ -0,0 +1,19 @@
+package android.os;
+
+/**
+ * Stands in for the Android <tt>Handler</tt> which the benchmarked classes
+ * reference but the benchmarks do not use.
+ */
+public class Handler {
+    public final boolean post(Runnable r) {
+        throw new UnsupportedOperationException();
+    }
+
+    public final boolean postDelayed(Runnable r, long delayMillis) {
+        throw new UnsupportedOperationException();
+    }
+
+    public final void removeCallbacks(Runnable r) {
+        throw new UnsupportedOperationException();
+    }
+}
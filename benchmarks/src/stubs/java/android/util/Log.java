@@ -0,0 +1,14 @@
+package android.util;
+
+/**
+ * Stands in for the Android <tt>Log</tt>. Discards the messages so that they
+ * do not skew the measurements.
+ */
+public final class Log {
+    private Log() {
+    }
+
+    public static int w(String tag, String msg) {
+        return 0;
+    }
+}
@@ -0,0 +1,19 @@
+package com.facebook.react.bridge;
+
+/**
+ * Stands in for the React Native <tt>Arguments</tt>. The real implementations
+ * of <tt>WritableMap</tt> and <tt>WritableArray</tt> are native so the code
+ * paths which create them are not benchmarked.
+ */
+public final class Arguments {
+    private Arguments() {
+    }
+
+    public static WritableArray createArray() {
+        throw new UnsupportedOperationException();
+    }
+
+    public static WritableMap createMap() {
+        throw new UnsupportedOperationException();
+    }
+}
@@ -0,0 +1,13 @@
+package com.facebook.react.bridge;
+
+public interface WritableMap {
+    void putArray(String key, WritableArray value);
+
+    void putBoolean(String key, boolean value);
+
+    void putDouble(String key, double value);
+
+    void putInt(String key, int value);
+
+    void putString(String key, String value);
+}
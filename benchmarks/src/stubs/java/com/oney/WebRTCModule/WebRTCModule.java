@@ -0,0 +1,9 @@
+package com.oney.WebRTCModule;
+
+/**
+ * Stands in for the React Native module in order to provide the log tag
+ * which the benchmarked classes share with it.
+ */
+class WebRTCModule {
+    final static String TAG = WebRTCModule.class.getCanonicalName();
+}
@@ -0,0 +1,22 @@
+'use strict';
+
+import {NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+/**
+ * Reports the rendering statistics of every RTCView which is currently
+ * rendering video in order to spot the views which drop frames (e.g. because
+ * they share a render thread with too many others).
+ *
+ * @param {Function} callback - invoked with an array of objects with the
+ * reactTag of an RTCView, the name of its renderThread, its framesReceived,
+ * framesDropped and framesRendered counts and its averageRenderTimeUs.
+ */
+export default function getRenderStatistics(callback: Function) {
+  if (!WebRTCModule.getRenderStatistics) {
+    console.warn('Render statistics not supported');
+    return;
+  }
+  WebRTCModule.getRenderStatistics(callback);
+}
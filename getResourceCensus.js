@@ -0,0 +1,24 @@
+'use strict';
+
+import {NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+/**
+ * Takes a census of the native WebRTC objects which are alive in order to
+ * catch leaks (e.g. in long-running deployments) before they run the app out
+ * of memory.
+ *
+ * @param {Function} callback - invoked with an object with peerConnections,
+ * mediaStreams, mediaStreamTracks, videoCapturers, dataChannels and
+ * videoRenderers arrays. Every element describes one native object with its
+ * age in milliseconds and a leaked property which tells whether it looks
+ * leaked (e.g. a remote stream which has outlived its RTCPeerConnection).
+ */
+export default function getResourceCensus(callback: Function) {
+  if (!WebRTCModule.getResourceCensus) {
+    console.warn('Resource census not supported');
+    return;
+  }
+  WebRTCModule.getResourceCensus(callback);
+}
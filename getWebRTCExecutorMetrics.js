@@ -0,0 +1,22 @@
+'use strict';
+
+import {NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+/**
+ * Reports the metrics of the native serial executor of the WebRTC operations
+ * (getUserMedia, createOffer, setRemoteDescription, etc.) in order to tell
+ * whether slow operations are queued behind each other.
+ *
+ * @param {Function} callback - invoked with an object with the current
+ * queueDepth, the maxQueueDepth and the queueTime and runTime histograms (with
+ * count, mean, p50, p95, p99 and max in microseconds) of the operations.
+ */
+export default function getWebRTCExecutorMetrics(callback: Function) {
+  if (!WebRTCModule.getWebRTCExecutorMetrics) {
+    console.warn('WebRTC executor metrics not supported');
+    return;
+  }
+  WebRTCModule.getWebRTCExecutorMetrics(callback);
+}
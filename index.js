@@ -6,7 +6,15 @@ import RTCSessionDescription from './RTCSessionDescription';
 import RTCView from './RTCView';
 import MediaStream from './MediaStream';
 import MediaStreamTrack from './MediaStreamTrack';
+import getRenderStatistics from './getRenderStatistics';
+import getResourceCensus from './getResourceCensus';
 import getUserMedia from './getUserMedia';
+import getWebRTCExecutorMetrics from './getWebRTCExecutorMetrics';
+import prewarm from './prewarm';
+import setEventBatching from './setEventBatching';
+import setRenderThreadCount from './setRenderThreadCount';
+import setStatsRecording from './setStatsRecording';
+import setVideoCapturerIdleTimeout from './setVideoCapturerIdleTimeout';
 
 module.exports = {
   RTCPeerConnection,
@@ -15,5 +23,13 @@ module.exports = {
   RTCView,
   MediaStream,
   MediaStreamTrack,
+  getRenderStatistics,
+  getResourceCensus,
   getUserMedia,
+  getWebRTCExecutorMetrics,
+  prewarm,
+  setEventBatching,
+  setRenderThreadCount,
+  setStatsRecording,
+  setVideoCapturerIdleTimeout,
 };
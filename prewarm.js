@@ -0,0 +1,18 @@
+'use strict';
+
+import {NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+/**
+ * Initializes the native WebRTC stack in the background ahead of its first
+ * use (e.g. when the app is about to show its call screen) so that the first
+ * getUserMedia or RTCPeerConnection does not pay for it.
+ */
+export default function prewarm() {
+  if (!WebRTCModule.prewarm) {
+    console.warn('Prewarm not supported');
+    return;
+  }
+  WebRTCModule.prewarm();
+}
@@ -0,0 +1,41 @@
+'use strict';
+
+import {DeviceEventEmitter, NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+/**
+ * The name of the event with which the native side delivers a batch of
+ * events (if event batching is enabled).
+ */
+const BATCH_EVENT_NAME = 'webRTCEventBatch';
+
+let batchSubscription;
+
+/**
+ * Configures the coalescing of the events which the native side sends to
+ * JavaScript (ICE candidates, data channel messages, state changes, etc.) into
+ * batches in order to reduce the number of React Native bridge crossings. The
+ * events of a batch are re-emitted in order through DeviceEventEmitter so the
+ * rest of the library (and the application) does not observe a difference.
+ *
+ * @param {Object} options - windowMs: the number of milliseconds for which
+ * events are gathered into a batch (0 disables batching); maxCount: the
+ * maximum number of events in a batch; latencySensitiveEvents: the names of
+ * the events which deliver the batch they are part of immediately.
+ */
+export default function setEventBatching(options) {
+  if (!WebRTCModule.setEventBatching) {
+    console.warn('Event batching not supported');
+    return;
+  }
+  if (!batchSubscription) {
+    batchSubscription
+      = DeviceEventEmitter.addListener(BATCH_EVENT_NAME, batch => {
+          for (const event of batch) {
+            DeviceEventEmitter.emit(event.name, event.params);
+          }
+        });
+  }
+  WebRTCModule.setEventBatching(options || {});
+}
@@ -0,0 +1,19 @@
+'use strict';
+
+import {NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+/**
+ * Sets the maximum number of threads on which the video of all RTCViews is
+ * rendered. Takes effect for the RTCViews which start rendering afterwards.
+ *
+ * @param {number} count - the maximum number of render threads
+ */
+export default function setRenderThreadCount(count: number) {
+  if (!WebRTCModule.setRenderThreadCount) {
+    console.warn('Render thread count not supported');
+    return;
+  }
+  WebRTCModule.setRenderThreadCount(count);
+}
@@ -0,0 +1,50 @@
+'use strict';
+
+import {DeviceEventEmitter, NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+let exportSubscription;
+
+/**
+ * Starts or stops recording the statistics of every (existing and future)
+ * RTCPeerConnection natively into a bounded ring buffer so that calls can be
+ * diagnosed after they have ended without polling the statistics into
+ * JavaScript. The recording of an RTCPeerConnection can be exported with
+ * RTCPeerConnection.exportStats or, if an export directory is specified, is
+ * exported when the RTCPeerConnection is closed.
+ *
+ * @param {Object} options - null to stop recording or intervalMs: the number
+ * of milliseconds between two samples (1000 by default); maxBytes: the cap of
+ * the memory used per RTCPeerConnection (1 MiB by default); exportDirectory:
+ * the directory to export the recording of an RTCPeerConnection to when it is
+ * closed; onExport: invoked with an object with peerConnectionId, path and
+ * samples properties when a recording has been exported.
+ */
+export default function setStatsRecording(options) {
+  if (!WebRTCModule.setStatsRecording) {
+    console.warn('Stats recording not supported');
+    return;
+  }
+  if (exportSubscription) {
+    exportSubscription.remove();
+    exportSubscription = undefined;
+  }
+  if (options && options.onExport) {
+    const onExport = options.onExport;
+    exportSubscription
+      = DeviceEventEmitter.addListener('peerConnectionStatsExported', ev => {
+          onExport({
+            peerConnectionId: ev.id,
+            path: ev.path,
+            samples: ev.samples
+          });
+        });
+  }
+  if (options) {
+    const {intervalMs, maxBytes, exportDirectory} = options;
+    WebRTCModule.setStatsRecording({intervalMs, maxBytes, exportDirectory});
+  } else {
+    WebRTCModule.setStatsRecording(null);
+  }
+}
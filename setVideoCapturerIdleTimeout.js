@@ -0,0 +1,45 @@
+'use strict';
+
+import {DeviceEventEmitter, NativeModules} from 'react-native';
+
+const {WebRTCModule} = NativeModules;
+
+let stoppedSubscription;
+
+/**
+ * Sets the number of milliseconds for which a camera which is no longer used
+ * by any local video track keeps capturing in anticipation of a new
+ * getUserMedia call for it (e.g. when rejoining a call or toggling video).
+ * Defaults to zero i.e. the camera is stopped as soon as its last track is
+ * stopped.
+ *
+ * @param {number} idleTimeoutMs - the number of milliseconds for which an
+ * unused camera keeps capturing
+ * @param {Function} onStopped - optional; invoked with an object with
+ * deviceName, duration (the number of milliseconds the stop took) and, if
+ * the stop failed, error properties whenever a camera has actually stopped.
+ * Replaces the previous one, if any.
+ */
+export default function setVideoCapturerIdleTimeout(
+    idleTimeoutMs: number,
+    onStopped?: Function) {
+  if (!WebRTCModule.setVideoCapturerIdleTimeout) {
+    console.warn('Video capturer idle timeout not supported');
+    return;
+  }
+  if (stoppedSubscription) {
+    stoppedSubscription.remove();
+    stoppedSubscription = undefined;
+  }
+  if (onStopped) {
+    stoppedSubscription
+      = DeviceEventEmitter.addListener('videoCapturerStopped', ev => {
+          onStopped({
+            deviceName: ev.deviceName,
+            duration: ev.duration,
+            error: ev.error
+          });
+        });
+  }
+  WebRTCModule.setVideoCapturerIdleTimeout(idleTimeoutMs);
+}